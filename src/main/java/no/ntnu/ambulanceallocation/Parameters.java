@@ -3,6 +3,7 @@ package no.ntnu.ambulanceallocation;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import no.ntnu.ambulanceallocation.optimization.ga.ConstraintStrategy;
+import no.ntnu.ambulanceallocation.optimization.ga.MigrationTopology;
 import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
 import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchDelay;
 import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchPolicy;
@@ -13,6 +14,10 @@ public final class Parameters {
   // General
   public static final int RUNS = 10;
   public static final int MAX_RUNNING_TIME = (int) (4.0 * 60); // 4 minutes
+  public static final int FITNESS_CACHE_SIZE = 100_000; // cached evaluations, 0 to disable
+  public static final int FITNESS_WORKERS = 0; // worker processes, 0 to simulate in this process
+  public static final int FITNESS_BATCH_SIZE = 4; // allocations sent to a worker at a time
+  public static final int FITNESS_BATCH_TIMEOUT = 300; // seconds before a batch is requeued
 
   // Simulation
   public static final int BUFFER_SIZE = 4; // hours
@@ -36,16 +41,35 @@ public final class Parameters {
 
   public static final int UPDATE_LOCATION_PERIOD = 5; // minutes
 
+  // set to 0 to simulate single solutions serially instead of in parallel time slices
+  public static final int SIMULATION_SLICE = 0; // hours
+  public static final int SIMULATION_SLICE_BUFFER_SIZE = 4; // hours
+
+  public static final String REPLAY_TRACE = ""; // trace to visualize instead of simulating, or ""
+
+  // set to 0 to simulate every solution on the full period
+  public static final int FIDELITY_HORIZON = 0; // hours to the earliest horizon
+  public static final int FIDELITY_REDUCTION = 2; // horizon growth and candidate cut per fidelity
+  public static final double FIDELITY_MIN_CORRELATION = 0.5; // rank correlation to keep a fidelity
+
   // SLS
   public static final int MAX_TRIES = 999;
   public static final double RESTART_PROBABILITY = 0.025;
   public static final double NOISE_PROBABILITY = 0.8;
+  public static final int NEIGHBORHOOD_SAMPLE_SIZE = 0; // neighbours tried per step, 0 for all
+  public static final boolean FIRST_IMPROVEMENT = false; // take the first improving neighbour
 
   // Genetic & Memetic Algorithm
   public static final Initializer INITIALIZER =
       new no.ntnu.ambulanceallocation.optimization.initializer.Random();
   public static final int ISLANDS = 0; // set to 0 to disable islands
   public static final int GENERATIONS_ISLAND = 90;
+  public static final int MIGRATION_INTERVAL = 10; // generations, 0 to disable migration
+  public static final int MIGRATION_SIZE = 5; // best individuals sent per migration
+  public static final MigrationTopology MIGRATION_TOPOLOGY = MigrationTopology.RING;
+  public static final int SURROGATE_CANDIDATES = 1; // offspring bred per simulated, 1 to disable
+  public static final double SURROGATE_EXPLORATION = 0.2; // screened offspring picked at random
+  public static final double SURROGATE_RIDGE = 1.0; // regularization of the surrogate model
   public static final int GENERATIONS_COMBINED = 9999;
   public static final int POPULATION_SIZE = 200;
   public static final int ELITE_SIZE = 10;
@@ -53,9 +77,15 @@ public final class Parameters {
   public static final int TOURNAMENT_TUNE_END = 30;
   public static final int DIVERSITY_LIMIT = 0;
   public static final int DIVERSIFY_GENERATIONS = 99999; // generations without improvement
+  public static final boolean SAVE_DIVERSITY = true; // measure the diversity of every generation
+  public static final boolean SAVE_DIVERSITY_OLD = false; // also measure the entropy diversity
   public static final int RESET_GENERATIONS = 100; // generations without improvement
   public static final boolean CROWDING = false;
   public static final boolean DISTINCT = true;
+  // offspring must beat the worst individual to survive, instead of only the retained ones
+  public static final boolean ELITIST_REPLACEMENT = false;
+  public static final boolean EARLY_ABORT = true; // stop simulating hopeless offspring/neighbours
+  public static final int STEADY_STATE_WORKERS = Runtime.getRuntime().availableProcessors();
 
   public static final double CROSSOVER_TUNE_START = 0.8;
   public static final double CROSSOVER_PROBABILITY = 0.1;
@@ -65,6 +95,8 @@ public final class Parameters {
 
   public static final boolean INCLUDE_REGULAR_INCIDENTS = true;
   public static final boolean USE_URGENCY_FITNESS = true;
+  // response time percentile used as fitness instead of the average, 0 to use the average
+  public static final double RESPONSE_TIME_PERCENTILE = 0;
   public static final boolean PRESET_URGENCY = false;
   public static final double PRESET_URGENCY_PROBABILITY = 0.75; // change acute to urgent
 }
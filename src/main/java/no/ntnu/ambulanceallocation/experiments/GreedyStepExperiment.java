@@ -0,0 +1,98 @@
+package no.ntnu.ambulanceallocation.experiments;
+
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.sls.NeighborhoodFunction;
+import no.ntnu.ambulanceallocation.optimization.sls.SlsSolution;
+import no.ntnu.ambulanceallocation.simulation.BaseStation;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Times greedy steps of the forward neighbourhood from a random solution until the first step
+ * that does not improve, which is the one that falls back on the truncated neighbours. Each step
+ * is compared with simulating the whole neighbourhood in full and in parallel, like a step did
+ * before early abort. Run with EARLY_ABORT on and the other SLS parameters at their defaults.
+ ***/
+public class GreedyStepExperiment implements Experiment {
+
+  private static final Logger logger = LoggerFactory.getLogger(GreedyStepExperiment.class);
+
+  private static final int MAX_STEPS = 50;
+
+  private final Result stepResult = new Result();
+
+  @Override
+  public void run() {
+    var config = Config.defaultConfig();
+    var solution = new SlsSolution(config);
+    solution.getFitness();
+
+    var stepTimes = new ArrayList<Double>();
+    var fullTimes = new ArrayList<Double>();
+    var improved = new ArrayList<Boolean>();
+    for (var step = 0; step < MAX_STEPS; step++) {
+      var neighbours = forwardNeighbours(solution.getAllocation());
+      var fitness = solution.getFitness();
+
+      var startTime = System.nanoTime();
+      solution.greedyStep(NeighborhoodFunction.FORWARD);
+      stepTimes.add(secondsSince(startTime));
+      improved.add(solution.getFitness() < fitness);
+
+      startTime = System.nanoTime();
+      Simulation.simulateAll(config, neighbours);
+      fullTimes.add(secondsSince(startTime));
+
+      logger.info(
+          "Step: {}, greedy step: {} s, full neighbourhood: {} s, improved: {}",
+          step,
+          stepTimes.get(step),
+          fullTimes.get(step),
+          improved.get(step));
+      if (!improved.get(step)) {
+        break;
+      }
+    }
+
+    stepResult.saveColumn("greedyStep", stepTimes);
+    stepResult.saveColumn("fullNeighbourhood", fullTimes);
+    stepResult.saveColumn("improved", improved);
+  }
+
+  @Override
+  public void saveResults() {
+    stepResult.saveResults("greedy_step_time");
+  }
+
+  private static List<Allocation> forwardNeighbours(Allocation allocation) {
+    var neighbours = new ArrayList<Allocation>();
+    for (var shift = 0; shift < allocation.size(); shift++) {
+      for (var variable = 0; variable < allocation.get(shift).size(); variable++) {
+        var neighbour = new Allocation(allocation);
+        var value = neighbour.get(shift).get(variable);
+        neighbour.set(shift, variable, (value + 1) % BaseStation.size());
+        neighbours.add(neighbour);
+      }
+    }
+    return neighbours;
+  }
+
+  private static double secondsSince(long startTime) {
+    return (System.nanoTime() - startTime) / 1_000_000_000.0;
+  }
+
+  public static void main(String[] args) {
+    logger.info("Running greedy step experiment...");
+    var greedyStepExperiment = new GreedyStepExperiment();
+    greedyStepExperiment.run();
+    logger.info("Done");
+
+    logger.info("Saving results for greedy step experiment...");
+    greedyStepExperiment.saveResults();
+    logger.info("Greedy step experiment completed successfully");
+  }
+}
@@ -5,6 +5,7 @@ import no.ntnu.ambulanceallocation.Parameters;
 import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
 import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
 import no.ntnu.ambulanceallocation.simulation.Simulation;
+import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +58,11 @@ public class SimpleAllocationExperiment implements Experiment {
 
     logger.info("Average response time: {}", simulationResults.averageResponseTimes());
     logger.info("Average survival rate: {}", simulationResults.averageSurvivalRate());
+    logger.info(
+        "Acute response time p50: {}, p90: {}, p95: {}",
+        simulationResults.responseTimePercentile(UrgencyLevel.ACUTE, 50),
+        simulationResults.responseTimePercentile(UrgencyLevel.ACUTE, 90),
+        simulationResults.responseTimePercentile(UrgencyLevel.ACUTE, 95));
   }
 
   public static void main(String[] args) {
@@ -0,0 +1,107 @@
+package no.ntnu.ambulanceallocation.experiments;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
+import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SlicedSimulationExperiment implements Experiment {
+
+  private static final Logger logger = LoggerFactory.getLogger(SlicedSimulationExperiment.class);
+
+  private static final List<Integer> SLICES = List.of(6, 12, 24, 48); // hours
+  private static final List<Integer> BUFFER_SIZES = List.of(0, 2, 4, 8); // hours
+
+  private final Result slicedResult = new Result();
+
+  @Override
+  public void run() {
+    var populationProportionate = new PopulationProportionate();
+    runSlicedExperiment(populationProportionate);
+  }
+
+  @Override
+  public void saveResults() {
+    slicedResult.saveResults("sliced_simulation_error");
+  }
+
+  private void runSlicedExperiment(Initializer initializer) {
+    var name = initializer.getClass().getSimpleName();
+    logger.info("Running {} ...", name);
+
+    var config = Config.defaultConfig();
+    var allocation =
+        new Allocation(
+            List.of(
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+
+    // warm up the shared incident and route data before timing anything
+    Simulation.withConfig(config).simulate(allocation);
+
+    var startTime = System.nanoTime();
+    var serial = Simulation.withConfig(config).simulate(allocation);
+    var serialTime = secondsSince(startTime);
+    logger.info("Serial: {} s", serialTime);
+
+    var slices = new ArrayList<Integer>();
+    var bufferSizes = new ArrayList<Integer>();
+    var times = new ArrayList<Double>();
+    var survivalErrors = new ArrayList<Double>();
+    var responseTimeErrors = new ArrayList<Double>();
+
+    for (var slice : SLICES) {
+      for (var bufferSize : BUFFER_SIZES) {
+        startTime = System.nanoTime();
+        var sliced =
+            Simulation.simulateSliced(config, allocation, Duration.ofHours(slice), bufferSize);
+        var time = secondsSince(startTime);
+
+        var survivalError = sliced.averageSurvivalRate() - serial.averageSurvivalRate();
+        var responseTimeError = sliced.averageResponseTimes() - serial.averageResponseTimes();
+        logger.info(
+            "Slice: {} h, buffer: {} h, time: {} s, survival error: {}, response time error: {}",
+            slice,
+            bufferSize,
+            time,
+            survivalError,
+            responseTimeError);
+
+        slices.add(slice);
+        bufferSizes.add(bufferSize);
+        times.add(time);
+        survivalErrors.add(survivalError);
+        responseTimeErrors.add(responseTimeError);
+      }
+    }
+
+    slicedResult.saveColumn("slice", slices);
+    slicedResult.saveColumn("buffer", bufferSizes);
+    slicedResult.saveColumn("time", times);
+    slicedResult.saveColumn("serialTime", List.of(serialTime));
+    slicedResult.saveColumn("survivalError", survivalErrors);
+    slicedResult.saveColumn("responseTimeError", responseTimeErrors);
+  }
+
+  private static double secondsSince(long startTime) {
+    return (System.nanoTime() - startTime) / 1_000_000_000.0;
+  }
+
+  public static void main(String[] args) {
+    logger.info("Running sliced simulation experiment...");
+    var slicedSimulationExperiment = new SlicedSimulationExperiment();
+    slicedSimulationExperiment.run();
+    logger.info("Done");
+
+    logger.info("Saving results for sliced simulation experiment...");
+    slicedSimulationExperiment.saveResults();
+    logger.info("Sliced simulation experiment completed successfully");
+  }
+}
@@ -0,0 +1,75 @@
+package no.ntnu.ambulanceallocation.experiments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Optimizer;
+import no.ntnu.ambulanceallocation.optimization.ga.GeneticAlgorithm;
+import no.ntnu.ambulanceallocation.optimization.ga.Progress;
+import no.ntnu.ambulanceallocation.optimization.ga.SteadyStateGeneticAlgorithm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SteadyStateExperiment implements Experiment {
+
+  private static final Logger logger = LoggerFactory.getLogger(SteadyStateExperiment.class);
+
+  private final Result timeToTargetResult = new Result();
+
+  @Override
+  public void run() {
+    var geneticAlgorithm = new GeneticAlgorithm();
+    var gaRuns = runs(geneticAlgorithm, geneticAlgorithm::getProgress);
+    var steadyStateGeneticAlgorithm = new SteadyStateGeneticAlgorithm();
+    var ssgaRuns = runs(steadyStateGeneticAlgorithm, steadyStateGeneticAlgorithm::getProgress);
+
+    // the best fitness every run of both optimizers reached, so every run has a time to target
+    var target = Double.NEGATIVE_INFINITY;
+    for (var progress : gaRuns) {
+      target = Math.max(target, progress.finalBestFitness());
+    }
+    for (var progress : ssgaRuns) {
+      target = Math.max(target, progress.finalBestFitness());
+    }
+    logger.info("Target fitness: {}", target);
+
+    saveTimesToTarget("GA", gaRuns, target);
+    saveTimesToTarget("SSGA", ssgaRuns, target);
+    timeToTargetResult.saveColumn("target", List.of(target));
+  }
+
+  @Override
+  public void saveResults() {
+    timeToTargetResult.saveResults("steady_state_time_to_target");
+  }
+
+  private static List<Progress> runs(Optimizer optimizer, Supplier<Progress> progress) {
+    var runs = new ArrayList<Progress>();
+    for (var i = 0; i < Parameters.RUNS; i++) {
+      logger.info("Starting {}... run {}/{}", optimizer.getAbbreviation(), i + 1, Parameters.RUNS);
+      optimizer.optimize();
+      runs.add(progress.get());
+    }
+    return runs;
+  }
+
+  private void saveTimesToTarget(String name, List<Progress> runs, double target) {
+    var timesToTarget = runs.stream().map(progress -> progress.timeToTarget(target)).toList();
+    var bestFitness = runs.stream().map(Progress::finalBestFitness).toList();
+    logger.info("{} times to target: {}", name, timesToTarget);
+    timeToTargetResult.saveColumn(name + "_time_to_target", timesToTarget);
+    timeToTargetResult.saveColumn(name + "_best", bestFitness);
+  }
+
+  public static void main(String[] args) {
+    logger.info("Running steady-state experiment...");
+    var steadyStateExperiment = new SteadyStateExperiment();
+    steadyStateExperiment.run();
+    logger.info("Done");
+
+    logger.info("Saving results for steady-state experiment...");
+    steadyStateExperiment.saveResults();
+    logger.info("Steady-state experiment completed successfully");
+  }
+}
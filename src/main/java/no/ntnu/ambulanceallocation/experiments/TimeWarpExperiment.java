@@ -0,0 +1,130 @@
+package no.ntnu.ambulanceallocation.experiments;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
+import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+import no.ntnu.ambulanceallocation.simulation.ZonedSimulation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TimeWarpExperiment implements Experiment {
+
+  private static final Logger logger = LoggerFactory.getLogger(TimeWarpExperiment.class);
+
+  private static final List<Integer> REGIONS = List.of(1, 2, 4, 8);
+  private static final List<Integer> ZONES = List.of(1, 2, 4, 8);
+  private static final List<Integer> WINDOWS = List.of(1, 6, 24); // hours
+
+  private final Result regionResult = new Result();
+  private final Result zoneResult = new Result();
+
+  @Override
+  public void run() {
+    var populationProportionate = new PopulationProportionate();
+    runTimeWarpExperiment(populationProportionate);
+  }
+
+  @Override
+  public void saveResults() {
+    regionResult.saveResults("time_warp_regions");
+    zoneResult.saveResults("time_warp_zones");
+  }
+
+  private void runTimeWarpExperiment(Initializer initializer) {
+    var name = initializer.getClass().getSimpleName();
+    logger.info("Running {} ...", name);
+
+    var config = Config.defaultConfig();
+    var allocation =
+        new Allocation(
+            List.of(
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+
+    // warm up the shared incident and route data before timing anything
+    var serial = Simulation.withConfig(config).simulate(allocation);
+
+    // synthetic service areas made of copies of the whole region, measuring how time scales
+    var regionCounts = new ArrayList<Integer>();
+    var windows = new ArrayList<Integer>();
+    var times = new ArrayList<Double>();
+    var rollbacks = new ArrayList<Long>();
+    var antiMessages = new ArrayList<Long>();
+    for (var regions : REGIONS) {
+      for (var window : WINDOWS) {
+        var zonedSimulation = ZonedSimulation.regions(config, regions);
+        var startTime = System.nanoTime();
+        zonedSimulation.simulate(allocation, Duration.ofHours(window));
+        var time = secondsSince(startTime);
+        logger.info(
+            "Regions: {}, window: {} h, time: {} s, {}",
+            regions,
+            window,
+            time,
+            zonedSimulation.getStatistics());
+
+        regionCounts.add(regions);
+        windows.add(window);
+        times.add(time);
+        rollbacks.add(zonedSimulation.getStatistics().rollbacks());
+        antiMessages.add(zonedSimulation.getStatistics().antiMessages());
+      }
+    }
+    regionResult.saveColumn("regions", regionCounts);
+    regionResult.saveColumn("window", windows);
+    regionResult.saveColumn("time", times);
+    regionResult.saveColumn("rollbacks", rollbacks);
+    regionResult.saveColumn("antiMessages", antiMessages);
+
+    // the default region partitioned into zones, measuring how far zone-local dispatch strays
+    var zoneCounts = new ArrayList<Integer>();
+    var zoneTimes = new ArrayList<Double>();
+    var survivalErrors = new ArrayList<Double>();
+    var responseTimeErrors = new ArrayList<Double>();
+    for (var zones : ZONES) {
+      var zonedSimulation = ZonedSimulation.partitioned(config, zones);
+      var startTime = System.nanoTime();
+      var zoned = zonedSimulation.simulate(allocation, Duration.ofHours(6));
+      var time = secondsSince(startTime);
+
+      var survivalError = zoned.averageSurvivalRate() - serial.averageSurvivalRate();
+      var responseTimeError = zoned.averageResponseTimes() - serial.averageResponseTimes();
+      logger.info(
+          "Zones: {}, time: {} s, survival error: {}, response time error: {}",
+          zones,
+          time,
+          survivalError,
+          responseTimeError);
+
+      zoneCounts.add(zones);
+      zoneTimes.add(time);
+      survivalErrors.add(survivalError);
+      responseTimeErrors.add(responseTimeError);
+    }
+    zoneResult.saveColumn("zones", zoneCounts);
+    zoneResult.saveColumn("time", zoneTimes);
+    zoneResult.saveColumn("survivalError", survivalErrors);
+    zoneResult.saveColumn("responseTimeError", responseTimeErrors);
+  }
+
+  private static double secondsSince(long startTime) {
+    return (System.nanoTime() - startTime) / 1_000_000_000.0;
+  }
+
+  public static void main(String[] args) {
+    logger.info("Running time warp experiment...");
+    var timeWarpExperiment = new TimeWarpExperiment();
+    timeWarpExperiment.run();
+    logger.info("Done");
+
+    logger.info("Saving results for time warp experiment...");
+    timeWarpExperiment.saveResults();
+    logger.info("Time warp experiment completed successfully");
+  }
+}
@@ -0,0 +1,90 @@
+package no.ntnu.ambulanceallocation.experiments;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TraceOverheadExperiment implements Experiment {
+
+  private static final Logger logger = LoggerFactory.getLogger(TraceOverheadExperiment.class);
+
+  private static final int REPETITIONS = 10;
+
+  private final Result overheadResult = new Result();
+
+  @Override
+  public void run() {
+    var config = Config.defaultConfig();
+    var initializer = new PopulationProportionate();
+    var allocation =
+        new Allocation(
+            List.of(
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+
+    // warm up the shared incident and route data before timing anything
+    Simulation.withConfig(config).simulate(allocation);
+
+    var plainTimes = new ArrayList<Double>();
+    var tracedTimes = new ArrayList<Double>();
+    var traceSizes = new ArrayList<Long>();
+    try {
+      var tracePath = Files.createTempFile("simulation", ".trace");
+      for (var repetition = 0; repetition < REPETITIONS; repetition++) {
+        var startTime = System.nanoTime();
+        Simulation.withConfig(config).simulate(allocation);
+        plainTimes.add(secondsSince(startTime));
+
+        startTime = System.nanoTime();
+        Simulation.withConfig(config).withTrace(tracePath).simulate(allocation);
+        tracedTimes.add(secondsSince(startTime));
+        traceSizes.add(Files.size(tracePath));
+      }
+      Files.delete(tracePath);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+
+    var plain = plainTimes.stream().mapToDouble(Double::doubleValue).average().orElseThrow();
+    var traced = tracedTimes.stream().mapToDouble(Double::doubleValue).average().orElseThrow();
+    logger.info(
+        "Plain: {} s, traced: {} s, overhead: {} %, trace size: {} bytes",
+        plain,
+        traced,
+        100 * (traced - plain) / plain,
+        traceSizes.get(0));
+
+    overheadResult.saveColumn("plain", plainTimes);
+    overheadResult.saveColumn("traced", tracedTimes);
+    overheadResult.saveColumn("traceSize", traceSizes);
+  }
+
+  @Override
+  public void saveResults() {
+    overheadResult.saveResults("trace_overhead");
+  }
+
+  private static double secondsSince(long startTime) {
+    return (System.nanoTime() - startTime) / 1_000_000_000.0;
+  }
+
+  public static void main(String[] args) {
+    logger.info("Running trace overhead experiment...");
+    var traceOverheadExperiment = new TraceOverheadExperiment();
+    traceOverheadExperiment.run();
+    logger.info("Done");
+
+    logger.info("Saving results for trace overhead experiment...");
+    traceOverheadExperiment.saveResults();
+    logger.info("Trace overhead experiment completed successfully");
+  }
+}
@@ -93,7 +93,7 @@ public class UrgencyExperiment implements Experiment {
     }
 
     var overallBestSimulationResults =
-        Simulation.withDefaultConfig().simulate(overallBestAllocation);
+        Simulation.withDefaultConfig().withIncidentRecords().simulate(overallBestAllocation);
 
     incidentResults.saveColumn("ga_response", overallBestSimulationResults.getResponseTimes());
     incidentResults.saveColumn(
@@ -86,7 +86,8 @@ public class FirstExperiment implements Experiment {
 
     var medianIndex = Utils.medianIndexOf(fitness);
     var medianAllocation = allocations.get(medianIndex);
-    var medianResponseTimes = Simulation.withDefaultConfig().simulate(medianAllocation);
+    var medianResponseTimes =
+        Simulation.withDefaultConfig().withIncidentRecords().simulate(medianAllocation);
 
     allocationResult.saveColumn(name + "_d", medianAllocation.getDayShiftAllocationSorted());
     allocationResult.saveColumn(name + "_n", medianAllocation.getNightShiftAllocationSorted());
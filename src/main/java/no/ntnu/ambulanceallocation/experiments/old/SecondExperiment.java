@@ -72,7 +72,7 @@ public class SecondExperiment implements Experiment {
     }
 
     SimulationResults overallBestSimulationResults =
-        Simulation.withDefaultConfig().simulate(overallBestAllocation);
+        Simulation.withDefaultConfig().withIncidentRecords().simulate(overallBestAllocation);
     bestFitnessAtTerminationResult.saveColumn(optimizerName, bestFitnessAtTermination);
     overallBestResponseTimesResult.saveColumn(
         "timestamp", overallBestSimulationResults.getCallTimes());
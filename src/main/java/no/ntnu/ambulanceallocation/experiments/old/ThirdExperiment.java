@@ -146,6 +146,7 @@ public class ThirdExperiment implements Experiment {
                             Simulation.withinPeriod(
                                     simulations.get(simulationPeriod).first(),
                                     simulations.get(simulationPeriod).second())
+                                .withIncidentRecords()
                                 .simulate(allocation);
                         logger.info(
                             "{} simulation finished for {}", simulationPeriod, allocationName);
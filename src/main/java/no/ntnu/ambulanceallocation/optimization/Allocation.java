@@ -8,7 +8,18 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import no.ntnu.ambulanceallocation.simulation.BaseStation;
 
-public record Allocation(List<List<Integer>> allocation) implements Iterable<List<Integer>> {
+/***
+ * The base station of every ambulance per shift. The shifts can only be changed through the
+ * methods of this class, which keep a 64-bit Zobrist-style hash of the (shift, base station)
+ * multiset up to date. Every assignment adds a random key to the hash, so permutations of a
+ * shift hash equally and moving one ambulance updates the hash in constant time. The station
+ * counts are kept up to date the same way, copying only the counts of the changed shift.
+ ***/
+public final class Allocation implements Iterable<List<Integer>> {
+
+  private final List<List<Integer>> allocation;
+  private long zobristHash;
+  private StationCounts counts;
 
   public Allocation(List<List<Integer>> allocation) {
     var allocationCopy = new ArrayList<List<Integer>>();
@@ -17,6 +28,10 @@ public record Allocation(List<List<Integer>> allocation) implements Iterable<Lis
       allocationCopy.add(new ArrayList<>(subAllocation));
     }
     this.allocation = allocationCopy;
+    for (var shift = 0; shift < allocationCopy.size(); shift++) {
+      zobristHash += shiftHash(shift, allocationCopy.get(shift));
+    }
+    this.counts = StationCounts.of(allocationCopy);
   }
 
   public Allocation() {
@@ -27,16 +42,63 @@ public record Allocation(List<List<Integer>> allocation) implements Iterable<Lis
     this(allocation.allocation);
   }
 
+  // splitmix64 of the (shift, base station) index, so the keys are the same in every run
+  private static long key(int shift, int baseStation) {
+    var z = (shift * (long) BaseStation.size() + baseStation + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private static long shiftHash(int shift, List<Integer> shiftAllocation) {
+    var hash = 0L;
+    for (var baseStation : shiftAllocation) {
+      hash += key(shift, baseStation);
+    }
+    return hash;
+  }
+
+  public List<List<Integer>> allocation() {
+    return stream().toList();
+  }
+
   public List<Integer> getDayShiftAllocation() {
-    return allocation.get(0);
+    return get(0);
   }
 
   public List<Integer> getNightShiftAllocation() {
-    return allocation.get(1);
+    return get(1);
   }
 
   public void setShiftAllocation(Integer shift, List<Integer> shiftAllocation) {
-    allocation.set(shift, shiftAllocation);
+    var newShiftAllocation = new ArrayList<>(shiftAllocation);
+    var previous = allocation.set(shift, newShiftAllocation);
+    zobristHash += shiftHash(shift, newShiftAllocation) - shiftHash(shift, previous);
+    counts = counts.withShift(shift, newShiftAllocation);
+  }
+
+  // returns the base station the ambulance was allocated to before
+  public int set(int shift, int index, int baseStation) {
+    int previous = allocation.get(shift).set(index, baseStation);
+    zobristHash += key(shift, baseStation) - key(shift, previous);
+    counts = counts.withMove(shift, previous, baseStation);
+    return previous;
+  }
+
+  // moves one ambulance of the shift to the end of the shift with its new base station
+  public void move(int shift, int fromBaseStation, int toBaseStation) {
+    var shiftAllocation = allocation.get(shift);
+    if (!shiftAllocation.remove(Integer.valueOf(fromBaseStation))) {
+      throw new IllegalStateException(
+          String.format("no ambulance at base station %d in shift %d", fromBaseStation, shift));
+    }
+    shiftAllocation.add(toBaseStation);
+    zobristHash += key(shift, toBaseStation) - key(shift, fromBaseStation);
+    counts = counts.withMove(shift, fromBaseStation, toBaseStation);
+  }
+
+  public void sort() {
+    allocation.forEach(shiftAllocation -> shiftAllocation.sort(Integer::compareTo));
   }
 
   public List<Integer> getDayShiftAllocationSorted() {
@@ -55,31 +117,45 @@ public record Allocation(List<List<Integer>> allocation) implements Iterable<Lis
     if (index > allocation.size()) {
       throw new IndexOutOfBoundsException(String.format("no allocation at index %d", index));
     }
-    return allocation.get(index);
+    return Collections.unmodifiableList(allocation.get(index));
   }
 
-  public int getCapacityViolationsCount() {
-    var violations = 0;
+  // equal for allocations with the same counts, regardless of the order within each shift
+  public long zobristHash() {
+    return zobristHash;
+  }
 
-    var dayShift = getDayShiftAllocation();
-    var nightShift = getNightShiftAllocation();
+  public StationCounts counts() {
+    return counts;
+  }
 
-    for (var baseStation : BaseStation.values()) {
-      var dayShiftCount = Collections.frequency(dayShift, baseStation.getId());
-      var nightShiftCount = Collections.frequency(nightShift, baseStation.getId());
-      var maxCount = Math.max(dayShiftCount, nightShiftCount);
-      var numOverCapacity = Math.max(0, maxCount - baseStation.getCapacity());
-      violations += numOverCapacity;
-    }
-    return violations;
+  public int getCapacityViolationsCount() {
+    return counts().getCapacityViolationsCount();
   }
 
   @Override
   public Iterator<List<Integer>> iterator() {
-    return allocation.iterator();
+    return allocation().iterator();
   }
 
   public Stream<List<Integer>> stream() {
-    return allocation.stream();
+    return allocation.stream().map(Collections::unmodifiableList);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Allocation other)) return false;
+    return allocation.equals(other.allocation);
+  }
+
+  @Override
+  public int hashCode() {
+    return allocation.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "Allocation[allocation=" + allocation + "]";
   }
 }
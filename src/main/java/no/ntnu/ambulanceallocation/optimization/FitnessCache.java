@@ -0,0 +1,68 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.simulation.Config;
+
+/***
+ * Process-wide cache of exact fitness evaluations, shared by every optimizer and thread. The
+ * simulation only depends on how many ambulances each base station gets per shift, so
+ * allocations are keyed by those counts together with the config. The 64-bit hash of the counts
+ * makes lookups cheap, and the counts themselves are compared on a hit so that a hash collision
+ * can never return the fitness of another allocation. Truncated evaluations are never cached,
+ * since they only bound the fitness.
+ ***/
+public final class FitnessCache {
+
+  private static final Cache<Key, Evaluation> cache =
+      CacheBuilder.newBuilder().maximumSize(Parameters.FITNESS_CACHE_SIZE).recordStats().build();
+
+  private FitnessCache() {}
+
+  public static Evaluation get(Allocation allocation, Config config) {
+    return cache.getIfPresent(new Key(allocation, config));
+  }
+
+  public static void put(Allocation allocation, Config config, Evaluation evaluation) {
+    cache.put(new Key(allocation, config), evaluation);
+  }
+
+  public static CacheStats getStatistics() {
+    return cache.stats();
+  }
+
+  public static void clear() {
+    cache.invalidateAll();
+  }
+
+  public record Evaluation(double fitness, double survivalRate) {}
+
+  private static final class Key {
+
+    private final long zobristHash;
+    private final StationCounts counts;
+    private final Config config;
+
+    private Key(Allocation allocation, Config config) {
+      this.zobristHash = allocation.zobristHash();
+      this.counts = allocation.counts();
+      this.config = config;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key other)) return false;
+      return zobristHash == other.zobristHash
+          && config.equals(other.config)
+          && counts.equals(other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * Long.hashCode(zobristHash) + config.hashCode();
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import static no.ntnu.ambulanceallocation.Parameters.FIDELITY_HORIZON;
+import static no.ntnu.ambulanceallocation.Parameters.FIDELITY_MIN_CORRELATION;
+import static no.ntnu.ambulanceallocation.Parameters.FIDELITY_REDUCTION;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+import no.ntnu.ambulanceallocation.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Multi-fidelity evaluation by successive halving. Solutions are first simulated up to a horizon
+ * FIDELITY_HORIZON hours into the period, which gives the best fitness each could still reach on
+ * the full period. The best of them are promoted to a horizon FIDELITY_REDUCTION times later,
+ * until the last ones are simulated on the full period. A solution that is not promoted is only
+ * truncated when its bound is already worse than the cutoff, so without a cutoff every solution
+ * is simulated in full. A few random solutions of every evaluation are simulated in full whatever
+ * their bounds, and the rank correlation between their bounds and their exact fitness decides
+ * which horizons are worth simulating for the config.
+ ***/
+public final class MultiFidelity {
+
+  private static final Logger logger = LoggerFactory.getLogger(MultiFidelity.class);
+  private static final int PROBES = 2; // solutions per evaluation simulated in full as samples
+  private static final int SAMPLE_WINDOW = 32; // latest samples the rank correlation is taken over
+  private static final int MIN_SAMPLES = 8; // samples needed to measure a rank correlation
+
+  private static final Map<Config, Schedule> schedules = new ConcurrentHashMap<>();
+
+  private MultiFidelity() {}
+
+  public static boolean isEnabled() {
+    return FIDELITY_HORIZON > 0;
+  }
+
+  // evaluates the solutions, handing the ones that could not be ruled out to fullEvaluation
+  public static <T extends Solution> void evaluate(
+      Config config, List<T> solutions, double cutoff, Consumer<List<T>> fullEvaluation) {
+    var candidates =
+        solutions.stream()
+            .filter(solution -> solution.needsEvaluation(cutoff))
+            .filter(solution -> !solution.useCachedFitness())
+            .toList();
+    if (candidates.isEmpty()) {
+      return;
+    }
+    if (cutoff == Double.POSITIVE_INFINITY) {
+      // no bound is worse than an infinite cutoff
+      fullEvaluation.accept(candidates);
+      return;
+    }
+
+    // a truncated solution is only evaluated again once its bound is no longer worse than the
+    // cutoff, and screening it again would not get it any further
+    var finalists = new ArrayList<T>();
+    var unscreened = new ArrayList<T>();
+    for (var candidate : candidates) {
+      (candidate.isTruncated() ? finalists : unscreened).add(candidate);
+    }
+    if (unscreened.size() > PROBES) {
+      finalists.addAll(schedules.computeIfAbsent(config, Schedule::new).screen(unscreened, cutoff));
+    } else {
+      finalists.addAll(unscreened);
+    }
+    if (!finalists.isEmpty()) {
+      fullEvaluation.accept(finalists);
+    }
+  }
+
+  private static final class Schedule {
+
+    private final Config config;
+    private final List<LocalDateTime> horizons = new ArrayList<>();
+    private final List<Config> fidelities = new ArrayList<>(); // keys of the cached bounds
+    private final List<Deque<double[]>> samples = new ArrayList<>();
+    private final double[] correlations;
+
+    Schedule(Config config) {
+      this.config = config;
+      var start = config.START_DATE_TIME();
+      var period = Duration.between(start, config.END_DATE_TIME()).toHours();
+      for (long hours = FIDELITY_HORIZON; hours < period; hours *= FIDELITY_REDUCTION) {
+        horizons.add(start.plusHours(hours));
+        fidelities.add(config.withPeriod(start, start.plusHours(hours), config.BUFFER_SIZE()));
+        samples.add(new ArrayDeque<>());
+      }
+      correlations = new double[horizons.size()];
+      Arrays.fill(correlations, Double.NaN);
+    }
+
+    // returns the solutions that are still to be simulated in full and truncates the others
+    <T extends Solution> List<T> screen(List<T> candidates, double cutoff) {
+      var shuffled = new ArrayList<>(candidates);
+      Collections.shuffle(shuffled, Utils.random());
+      sample(shuffled.subList(0, PROBES));
+      var promoted = List.copyOf(shuffled.subList(PROBES, shuffled.size()));
+
+      for (var fidelity = 0; fidelity < horizons.size(); fidelity++) {
+        if (promoted.size() <= 1 || isSkipped(fidelity)) {
+          continue;
+        }
+        var bounds = bounds(fidelity, promoted);
+        var order =
+            IntStream.range(0, promoted.size())
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> bounds[i]))
+                .toList();
+        var promotedSize = (int) Math.ceil(promoted.size() / (double) FIDELITY_REDUCTION);
+        var next = new ArrayList<T>();
+        for (var rank = 0; rank < order.size(); rank++) {
+          var i = order.get(rank);
+          var solution = promoted.get(i);
+          if (rank < promotedSize || bounds[i] <= cutoff) {
+            next.add(solution);
+          } else {
+            solution.setEvaluation(bounds[i] - solution.penalty(), 0.0, true);
+          }
+        }
+        promoted = next;
+      }
+      return promoted;
+    }
+
+    // simulates the probes in full and keeps their bounds and exact fitness as samples
+    private void sample(List<? extends Solution> probes) {
+      var bounds = new double[horizons.size()][];
+      for (var fidelity = 0; fidelity < horizons.size(); fidelity++) {
+        bounds[fidelity] = bounds(fidelity, probes);
+      }
+      var allocations = probes.stream().map(Solution::getAllocation).toList();
+      var results = Simulation.simulateAll(config, allocations);
+      for (var i = 0; i < probes.size(); i++) {
+        probes.get(i).setSimulationResults(results.get(i));
+      }
+      for (var fidelity = 0; fidelity < horizons.size(); fidelity++) {
+        for (var i = 0; i < probes.size(); i++) {
+          track(fidelity, bounds[fidelity][i], probes.get(i).getFitness());
+        }
+      }
+    }
+
+    // best fitness each solution can reach given the horizon, taken from the fitness cache if
+    // possible, where it is kept under the config of the period up to the horizon
+    private double[] bounds(int fidelity, List<? extends Solution> solutions) {
+      var key = fidelities.get(fidelity);
+      var bounds = new double[solutions.size()];
+      var unbounded = new ArrayList<Integer>();
+      for (var i = 0; i < solutions.size(); i++) {
+        var evaluation = FitnessCache.get(solutions.get(i).getAllocation(), key);
+        if (evaluation == null) {
+          unbounded.add(i);
+        } else {
+          bounds[i] = evaluation.fitness();
+        }
+      }
+
+      var allocations = unbounded.stream().map(i -> solutions.get(i).getAllocation()).toList();
+      var results = Simulation.simulateUntil(config, allocations, horizons.get(fidelity));
+      for (var j = 0; j < unbounded.size(); j++) {
+        var solution = solutions.get(unbounded.get(j));
+        var bound =
+            results
+                    .get(j)
+                    .simulatedFitness(
+                        config.USE_URGENCY_FITNESS(), config.RESPONSE_TIME_PERCENTILE())
+                + solution.penalty();
+        FitnessCache.put(solution.getAllocation(), key, new FitnessCache.Evaluation(bound, 0.0));
+        bounds[unbounded.get(j)] = bound;
+      }
+      return bounds;
+    }
+
+    private synchronized boolean isSkipped(int fidelity) {
+      return correlations[fidelity] < FIDELITY_MIN_CORRELATION;
+    }
+
+    private synchronized void track(int fidelity, double bound, double fitness) {
+      var fidelitySamples = samples.get(fidelity);
+      fidelitySamples.addLast(new double[] {bound, fitness});
+      if (fidelitySamples.size() > SAMPLE_WINDOW) {
+        fidelitySamples.removeFirst();
+      }
+      if (fidelitySamples.size() < MIN_SAMPLES) {
+        return;
+      }
+      var correlation =
+          rankCorrelation(
+              fidelitySamples.stream().mapToDouble(sample -> sample[0]).toArray(),
+              fidelitySamples.stream().mapToDouble(sample -> sample[1]).toArray());
+      var wasSkipped = isSkipped(fidelity);
+      correlations[fidelity] = correlation;
+      if (isSkipped(fidelity) != wasSkipped) {
+        logger.info(
+            "{} {} hour fidelity with rank correlation {}",
+            wasSkipped ? "Resuming" : "Skipping",
+            Duration.between(config.START_DATE_TIME(), horizons.get(fidelity)).toHours(),
+            correlation);
+      }
+    }
+  }
+
+  // spearman rank correlation, with tied values sharing their average rank
+  static double rankCorrelation(double[] x, double[] y) {
+    var rankX = ranks(x);
+    var rankY = ranks(y);
+    var meanRank = (x.length - 1) / 2.0;
+    var covariance = 0.0;
+    var varianceX = 0.0;
+    var varianceY = 0.0;
+    for (var i = 0; i < x.length; i++) {
+      covariance += (rankX[i] - meanRank) * (rankY[i] - meanRank);
+      varianceX += (rankX[i] - meanRank) * (rankX[i] - meanRank);
+      varianceY += (rankY[i] - meanRank) * (rankY[i] - meanRank);
+    }
+    if (varianceX == 0.0 || varianceY == 0.0) {
+      return 0.0;
+    }
+    return covariance / Math.sqrt(varianceX * varianceY);
+  }
+
+  private static double[] ranks(double[] values) {
+    var order =
+        IntStream.range(0, values.length)
+            .boxed()
+            .sorted(Comparator.comparingDouble(i -> values[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    var ranks = new double[values.length];
+    for (var start = 0; start < order.length; ) {
+      var end = start;
+      while (end + 1 < order.length && values[order[end + 1]] == values[order[start]]) {
+        end++;
+      }
+      for (var k = start; k <= end; k++) {
+        ranks[order[k]] = (start + end) / 2.0;
+      }
+      start = end + 1;
+    }
+    return ranks;
+  }
+}
@@ -1,21 +1,28 @@
 package no.ntnu.ambulanceallocation.optimization;
 
+import static no.ntnu.ambulanceallocation.Parameters.SIMULATION_SLICE;
+import static no.ntnu.ambulanceallocation.Parameters.SIMULATION_SLICE_BUFFER_SIZE;
+
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Stream;
+import java.util.function.BooleanSupplier;
 import javax.annotation.Nonnull;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessFarm;
 import no.ntnu.ambulanceallocation.optimization.ga.ConstraintStrategy;
 import no.ntnu.ambulanceallocation.optimization.ga.Individual;
 import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
 import no.ntnu.ambulanceallocation.simulation.BaseStation;
+import no.ntnu.ambulanceallocation.simulation.Checkpoint;
 import no.ntnu.ambulanceallocation.simulation.Config;
 import no.ntnu.ambulanceallocation.simulation.Simulation;
+import no.ntnu.ambulanceallocation.simulation.SimulationResults;
 
 public abstract class Solution implements Comparable<Solution> {
 
+  private static final BooleanSupplier NOT_CANCELLED = () -> false;
+
   private Allocation allocation;
   private double responseTimeA;
   private double responseTimeH;
@@ -25,6 +32,8 @@ public abstract class Solution implements Comparable<Solution> {
   private int rank;
   private double crowdingDistance;
   private boolean hasAllocationChanged = true;
+  private boolean truncated = false;
+  private Checkpoint checkpoint;
   private boolean calculateNovelty = true;
   private Config config = Config.defaultConfig();
 
@@ -58,6 +67,8 @@ public abstract class Solution implements Comparable<Solution> {
     survivalRate = solution.survivalRate;
     allocation = new Allocation(solution.allocation);
     hasAllocationChanged = solution.hasAllocationChanged;
+    truncated = solution.truncated;
+    checkpoint = solution.checkpoint;
     calculateNovelty = true;
   }
 
@@ -66,16 +77,63 @@ public abstract class Solution implements Comparable<Solution> {
     fitness = solution.fitness;
     allocation = new Allocation(solution.allocation);
     hasAllocationChanged = solution.hasAllocationChanged;
+    truncated = solution.truncated;
+    checkpoint = solution.checkpoint;
   }
 
   public double getFitness() {
     if (hasAllocationChanged) {
-      calculateFitness();
+      calculateFitness(Double.POSITIVE_INFINITY, NOT_CANCELLED, false);
       hasAllocationChanged = false;
     }
     return fitness;
   }
 
+  /***
+   * Evaluates the solution only as far as needed to tell whether its fitness can beat the cutoff.
+   * If it cannot, the solution is truncated and its fitness is a lower bound above the cutoff.
+   ***/
+  public void evaluate(double cutoff) {
+    if (needsEvaluation(cutoff)) {
+      calculateFitness(cutoff, NOT_CANCELLED, false);
+      hasAllocationChanged = false;
+    }
+  }
+
+  // also gives up the simulation as soon as it is cancelled, leaving the solution truncated. The
+  // fitness farm cannot cancel its simulations, so these always run in this process
+  public void evaluate(double cutoff, BooleanSupplier cancelled) {
+    if (needsEvaluation(cutoff)) {
+      calculateFitness(cutoff, cancelled, true);
+      hasAllocationChanged = false;
+    }
+  }
+
+  public boolean needsEvaluation(double cutoff) {
+    return hasAllocationChanged || (truncated && fitness <= cutoff);
+  }
+
+  // takes the fitness from the fitness cache if this allocation has been evaluated before
+  public boolean useCachedFitness() {
+    var evaluation = FitnessCache.get(allocation, config);
+    if (evaluation == null) {
+      return false;
+    }
+    fitness = evaluation.fitness();
+    survivalRate = evaluation.survivalRate();
+    truncated = false;
+    hasAllocationChanged = false;
+    return true;
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  public double getSimulationCutoff(double cutoff) {
+    return cutoff - penalty();
+  }
+
   public double getSurvivalRate() {
     return survivalRate;
   }
@@ -140,30 +198,88 @@ public abstract class Solution implements Comparable<Solution> {
     return crowdingDistance;
   }
 
-  private void calculateFitness() {
-    var simulationResults = Simulation.withConfig(config).simulate(allocation);
+  public Config getConfig() {
+    return config;
+  }
 
-    var simulatedFitness =
-        config.USE_URGENCY_FITNESS()
-            ? 1.0 - simulationResults.averageSurvivalRate()
-            : simulationResults.averageResponseTimes();
+  // neighbours and offspring keep the checkpoint of the solution they were derived from
+  public Checkpoint getCheckpoint() {
+    return checkpoint;
+  }
 
-    var violations =
-        config.CONSTRAINT_STRATEGY().equals(ConstraintStrategy.PENALTY)
-            ? allocation.getCapacityViolationsCount()
-            : 0;
+  public void setSimulationResults(SimulationResults simulationResults) {
+    applySimulationResults(simulationResults);
+    hasAllocationChanged = false;
+  }
 
-    var penaltyFactor = config.USE_URGENCY_FITNESS() ? 0.01 : 10;
+  // for simulations run elsewhere, like in the workers of the fitness farm
+  public void setEvaluation(double simulatedFitness, double survivalRate, boolean truncated) {
+    applyEvaluation(simulatedFitness, survivalRate, truncated);
+    hasAllocationChanged = false;
+  }
 
-    fitness = simulatedFitness + (violations * penaltyFactor);
+  private void calculateFitness(double cutoff, BooleanSupplier cancelled, boolean cancellable) {
+    if (useCachedFitness()) {
+      return;
+    }
+    if (FitnessFarm.isEnabled() && !cancellable) {
+      FitnessFarm.evaluate(config, List.of(this), new double[] {getSimulationCutoff(cutoff)});
+      return;
+    }
+    if (SIMULATION_SLICE > 0) {
+      applySimulationResults(
+          Simulation.simulateSliced(
+              config,
+              allocation,
+              Duration.ofHours(SIMULATION_SLICE),
+              SIMULATION_SLICE_BUFFER_SIZE,
+              cancelled));
+      return;
+    }
+    applySimulationResults(
+        Simulation.withConfig(config)
+            .withCancellation(cancelled)
+            .withCheckpointRecording()
+            .simulate(allocation, getSimulationCutoff(cutoff), checkpoint));
+  }
 
-    survivalRate = simulationResults.averageSurvivalRate();
+  private void applySimulationResults(SimulationResults simulationResults) {
+    if (simulationResults.getCheckpoint() != null) {
+      checkpoint = simulationResults.getCheckpoint();
+    }
+    var truncated = simulationResults.isTruncated();
+    applyEvaluation(
+        simulationResults.simulatedFitness(
+            config.USE_URGENCY_FITNESS(), config.RESPONSE_TIME_PERCENTILE()),
+        truncated ? 0.0 : simulationResults.averageSurvivalRate(),
+        truncated);
+  }
+
+  private void applyEvaluation(double simulatedFitness, double survivalRate, boolean truncated) {
+    this.truncated = truncated;
+    this.fitness = simulatedFitness + penalty();
+    this.survivalRate = survivalRate;
+    if (truncated) {
+      return;
+    }
+    FitnessCache.put(allocation, config, new FitnessCache.Evaluation(fitness, survivalRate));
     // for multi-objective
     /* var resultMap = simulationResults.createAverageResults();
     responseTimeA = resultMap.get("acuteResponse");
     responseTimeH = resultMap.get("urgentResponse");*/
   }
 
+  double penalty() {
+    var violations =
+        config.CONSTRAINT_STRATEGY().equals(ConstraintStrategy.PENALTY)
+            ? allocation.getCapacityViolationsCount()
+            : 0;
+
+    var penaltyFactor = config.USE_URGENCY_FITNESS() ? 0.01 : 10;
+
+    return violations * penaltyFactor;
+  }
+
   private void calculateNovelty(List<Individual> population) {
     novelty = 0.0;
     for (var other : population) {
@@ -189,8 +305,8 @@ public abstract class Solution implements Comparable<Solution> {
   }
 
   protected void setAllocation(int subAllocation, int variable, int variableValue) {
-    var previousValue = this.allocation.get(subAllocation).set(variable, variableValue);
-    hasAllocationChanged = !previousValue.equals(variableValue);
+    var previousValue = this.allocation.set(subAllocation, variable, variableValue);
+    hasAllocationChanged = previousValue != variableValue;
   }
 
   protected void setAllocation(List<List<Integer>> allocation) {
@@ -205,8 +321,7 @@ public abstract class Solution implements Comparable<Solution> {
   }
 
   public void sortAllocation() {
-    getDayShiftAllocation().sort(Integer::compareTo);
-    getNightShiftAllocation().sort(Integer::compareTo);
+    allocation.sort();
   }
 
   public void allocationChanged() {
@@ -222,54 +337,36 @@ public abstract class Solution implements Comparable<Solution> {
   }
 
   public Solution conformToConstraints() {
-    var dayShift = getDayShiftAllocation();
-    var nightShift = getNightShiftAllocation();
-
-    for (var baseStation : BaseStation.values()) {
-      var id = baseStation.getId();
-
-      var dayOverCapacity =
-          Math.max(0, Collections.frequency(dayShift, id) - baseStation.getCapacity());
-      var nightOverCapacity =
-          Math.max(0, Collections.frequency(nightShift, id) - baseStation.getCapacity());
-
-      if (dayOverCapacity > 0 || nightOverCapacity > 0) {
-        Collections.nCopies(dayOverCapacity, id)
-            .forEach(
-                i -> {
-                  dayShift.remove(i);
-                  dayShift.add(closestAvailableBaseStation(baseStation, dayShift).getId());
-                });
-        Collections.nCopies(nightOverCapacity, id)
-            .forEach(
-                i -> {
-                  nightShift.remove(i);
-                  nightShift.add(closestAvailableBaseStation(baseStation, nightShift).getId());
-                });
-        hasAllocationChanged = true;
+    var counts = allocation.counts();
+    for (var shift = 0; shift < allocation.size(); shift++) {
+      var shiftCounts = counts.getShift(shift);
+
+      for (var baseStation : BaseStation.values()) {
+        var id = baseStation.getId();
+        var overCapacity = Math.max(0, shiftCounts[id] - baseStation.getCapacity());
+
+        for (var i = 0; i < overCapacity; i++) {
+          shiftCounts[id]--;
+          var closest = closestAvailableBaseStation(baseStation, shiftCounts).getId();
+          allocation.move(shift, id, closest);
+          shiftCounts[closest]++;
+          hasAllocationChanged = true;
+        }
       }
     }
     return this;
   }
 
-  private BaseStation closestAvailableBaseStation(BaseStation baseStation, List<Integer> shift) {
+  private BaseStation closestAvailableBaseStation(BaseStation baseStation, int[] shiftCounts) {
     return Arrays.stream(BaseStation.values())
         .filter(b -> !b.equals(baseStation))
-        .filter(b -> b.getCapacity() - Collections.frequency(shift, b.getId()) > 0)
+        .filter(b -> b.getCapacity() - shiftCounts[b.getId()] > 0)
         .min(Comparator.comparingDouble(b -> baseStation.getCoordinate().timeTo(b.getCoordinate())))
         .orElseThrow();
   }
 
   public int distance(Solution other) {
-    var distance = 0;
-    for (var i = 0; i < allocation.size(); i++) {
-      for (var b : BaseStation.values()) {
-        var f = Collections.frequency(allocation.get(i), b.getId());
-        var fOther = Collections.frequency(other.allocation.get(i), b.getId());
-        distance += Math.abs(f - fOther);
-      }
-    }
-    return distance;
+    return allocation.counts().distance(other.allocation.counts());
   }
 
   @Override
@@ -284,23 +381,18 @@ public abstract class Solution implements Comparable<Solution> {
         getFitness(), getDayShiftAllocation(), getNightShiftAllocation());
   }
 
+  // solutions are equal when they allocate as many ambulances to every base station per shift,
+  // the counts are only compared when the hashes match
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
     if (!(o instanceof Solution solution)) return false;
-    return Stream.concat(
-            getDayShiftAllocation().stream().sorted(), getNightShiftAllocation().stream().sorted())
-        .equals(
-            Stream.concat(
-                solution.getDayShiftAllocation().stream().sorted(),
-                solution.getNightShiftAllocation().stream().sorted()));
+    return allocation.zobristHash() == solution.allocation.zobristHash()
+        && allocation.counts().equals(solution.allocation.counts());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(
-        Stream.concat(
-            getDayShiftAllocation().stream().sorted(),
-            getNightShiftAllocation().stream().sorted()));
+    return Long.hashCode(allocation.zobristHash());
   }
 }
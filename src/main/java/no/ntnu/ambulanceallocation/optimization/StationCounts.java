@@ -0,0 +1,138 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import no.ntnu.ambulanceallocation.simulation.BaseStation;
+
+/***
+ * The number of ambulances at each base station per shift. This is all the simulation depends on,
+ * so every permutation of an allocation has the same counts. Distances, equality and constraint
+ * checks on counts take time proportional to the number of base stations.
+ ***/
+public final class StationCounts {
+
+  private final int[][] counts;
+
+  private StationCounts(int[][] counts) {
+    this.counts = counts;
+  }
+
+  public static StationCounts of(Allocation allocation) {
+    return allocation.counts();
+  }
+
+  static StationCounts of(List<List<Integer>> allocation) {
+    var counts = new int[allocation.size()][];
+    for (var shift = 0; shift < counts.length; shift++) {
+      counts[shift] = shiftCounts(allocation.get(shift));
+    }
+    return new StationCounts(counts);
+  }
+
+  private static int[] shiftCounts(List<Integer> shiftAllocation) {
+    var shiftCounts = new int[BaseStation.size()];
+    for (var baseStation : shiftAllocation) {
+      shiftCounts[baseStation]++;
+    }
+    return shiftCounts;
+  }
+
+  // the counts never change once made, so the unchanged shifts are shared with the copy
+  StationCounts withMove(int shift, int fromBaseStation, int toBaseStation) {
+    var copy = counts.clone();
+    copy[shift] = counts[shift].clone();
+    copy[shift][fromBaseStation]--;
+    copy[shift][toBaseStation]++;
+    return new StationCounts(copy);
+  }
+
+  StationCounts withShift(int shift, List<Integer> shiftAllocation) {
+    var copy = counts.clone();
+    copy[shift] = shiftCounts(shiftAllocation);
+    return new StationCounts(copy);
+  }
+
+  public static StationCounts of(int[]... counts) {
+    var copy = new int[counts.length][];
+    for (var shift = 0; shift < counts.length; shift++) {
+      if (counts[shift].length != BaseStation.size()) {
+        throw new IllegalArgumentException("Expected a count for every base station");
+      }
+      copy[shift] = counts[shift].clone();
+    }
+    return new StationCounts(copy);
+  }
+
+  public int shifts() {
+    return counts.length;
+  }
+
+  public int get(int shift, int baseStation) {
+    return counts[shift][baseStation];
+  }
+
+  public int[] getShift(int shift) {
+    return counts[shift].clone();
+  }
+
+  public int total(int shift) {
+    return Arrays.stream(counts[shift]).sum();
+  }
+
+  // the number of ambulances that would have to move to turn one allocation into the other
+  public int distance(StationCounts other) {
+    var distance = 0;
+    for (var shift = 0; shift < counts.length; shift++) {
+      for (var baseStation = 0; baseStation < counts[shift].length; baseStation++) {
+        distance += Math.abs(counts[shift][baseStation] - other.counts[shift][baseStation]);
+      }
+    }
+    return distance;
+  }
+
+  // ambulances above the capacity of their base station in the fullest shift
+  public int getCapacityViolationsCount() {
+    var violations = 0;
+    for (var baseStation : BaseStation.values()) {
+      var maxCount = 0;
+      for (var shiftCounts : counts) {
+        maxCount = Math.max(maxCount, shiftCounts[baseStation.getId()]);
+      }
+      violations += Math.max(0, maxCount - baseStation.getCapacity());
+    }
+    return violations;
+  }
+
+  // an allocation with these counts and the base stations of each shift in ascending order
+  public Allocation toAllocation() {
+    var allocation = new ArrayList<List<Integer>>();
+    for (var shiftCounts : counts) {
+      var shift = new ArrayList<Integer>();
+      for (var baseStation = 0; baseStation < shiftCounts.length; baseStation++) {
+        for (var i = 0; i < shiftCounts[baseStation]; i++) {
+          shift.add(baseStation);
+        }
+      }
+      allocation.add(shift);
+    }
+    return new Allocation(allocation);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof StationCounts other)) return false;
+    return Arrays.deepEquals(counts, other.counts);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.deepHashCode(counts);
+  }
+
+  @Override
+  public String toString() {
+    return "StationCounts" + Arrays.deepToString(counts);
+  }
+}
@@ -0,0 +1,134 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import java.util.List;
+import no.ntnu.ambulanceallocation.simulation.BaseStation;
+
+/***
+ * Online ridge regression from the station counts of an allocation to its fitness. Every
+ * evaluated solution updates the normal equations, and the weights are solved again lazily
+ * before the next prediction, so a prediction only costs one dot product over the counts.
+ * Unevaluated and truncated solutions are left out, since they have no exact fitness.
+ ***/
+public class Surrogate {
+
+  private static final int SHIFTS = 2; // day and night
+
+  private final int features;
+  private final double ridge;
+  private final int minimumSamples;
+  private final double[][] gram;
+  private final double[] moments;
+  private double[] weights;
+  private int samples = 0;
+
+  public Surrogate(double ridge, int minimumSamples) {
+    this.features = 1 + SHIFTS * BaseStation.size();
+    this.ridge = ridge;
+    this.minimumSamples = minimumSamples;
+    this.gram = new double[features][features];
+    this.moments = new double[features];
+  }
+
+  private double[] features(StationCounts counts) {
+    var x = new double[features];
+    x[0] = 1.0;
+    for (var shift = 0; shift < SHIFTS; shift++) {
+      for (var baseStation = 0; baseStation < BaseStation.size(); baseStation++) {
+        x[1 + shift * BaseStation.size() + baseStation] = counts.get(shift, baseStation);
+      }
+    }
+    return x;
+  }
+
+  public synchronized boolean isTrained() {
+    return samples >= minimumSamples;
+  }
+
+  public synchronized void add(Solution solution) {
+    if (solution.hasChanged() || solution.isTruncated()) {
+      return;
+    }
+    var x = features(solution.getAllocation().counts());
+    var y = solution.getFitness();
+    for (var i = 0; i < features; i++) {
+      for (var j = 0; j < features; j++) {
+        gram[i][j] += x[i] * x[j];
+      }
+      moments[i] += x[i] * y;
+    }
+    samples++;
+    weights = null;
+  }
+
+  public void addAll(List<? extends Solution> solutions) {
+    solutions.forEach(this::add);
+  }
+
+  public synchronized double predict(StationCounts counts) {
+    if (weights == null) {
+      weights = solve();
+    }
+    var x = features(counts);
+    var prediction = 0.0;
+    for (var i = 0; i < features; i++) {
+      prediction += weights[i] * x[i];
+    }
+    return prediction;
+  }
+
+  // mean absolute error of the predictions for the solutions with an exact fitness
+  public double meanAbsoluteError(List<? extends Solution> solutions) {
+    return solutions.stream()
+        .filter(solution -> !solution.isTruncated())
+        .mapToDouble(
+            solution ->
+                Math.abs(predict(solution.getAllocation().counts()) - solution.getFitness()))
+        .average()
+        .orElse(Double.NaN);
+  }
+
+  // gaussian elimination with partial pivoting on the regularized normal equations
+  private double[] solve() {
+    var a = new double[features][features + 1];
+    for (var i = 0; i < features; i++) {
+      System.arraycopy(gram[i], 0, a[i], 0, features);
+      // the intercept is not regularized
+      if (i > 0) {
+        a[i][i] += ridge;
+      }
+      a[i][features] = moments[i];
+    }
+
+    for (var column = 0; column < features; column++) {
+      var pivot = column;
+      for (var row = column + 1; row < features; row++) {
+        if (Math.abs(a[row][column]) > Math.abs(a[pivot][column])) {
+          pivot = row;
+        }
+      }
+      var swap = a[column];
+      a[column] = a[pivot];
+      a[pivot] = swap;
+
+      if (a[column][column] == 0.0) {
+        continue;
+      }
+      for (var row = column + 1; row < features; row++) {
+        var factor = a[row][column] / a[column][column];
+        for (var k = column; k <= features; k++) {
+          a[row][k] -= factor * a[column][k];
+        }
+      }
+    }
+
+    var solution = new double[features];
+    for (var row = features - 1; row >= 0; row--) {
+      var sum = a[row][features];
+      for (var k = row + 1; k < features; k++) {
+        sum -= a[row][k] * solution[k];
+      }
+      solution[row] = a[row][row] == 0.0 ? 0.0 : sum / a[row][row];
+    }
+    return solution;
+  }
+}
@@ -0,0 +1,220 @@
+package no.ntnu.ambulanceallocation.optimization.farm;
+
+import static no.ntnu.ambulanceallocation.Parameters.FITNESS_BATCH_SIZE;
+import static no.ntnu.ambulanceallocation.Parameters.FITNESS_BATCH_TIMEOUT;
+import static no.ntnu.ambulanceallocation.Parameters.FITNESS_WORKERS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import no.ntnu.ambulanceallocation.optimization.Solution;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Reply;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Request;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Simulates solutions in FITNESS_WORKERS worker processes instead of in this JVM. The workers
+ * are started on the first evaluation and connect back over loopback sockets. Batches of
+ * allocations wait in one queue that every worker takes from, so faster workers serve more of
+ * them. The batch of a worker that fails goes back to the queue for the others, and once every
+ * worker has failed the batches are simulated locally. A batch that has not been answered within
+ * FITNESS_BATCH_TIMEOUT goes back to the queue as well, and the first answer to arrive is used.
+ * Workers simulate in time slices like this process does, but always from the start of the
+ * period, since checkpoints stay in this process.
+ ***/
+public final class FitnessFarm {
+
+  private static final Logger logger = LoggerFactory.getLogger(FitnessFarm.class);
+  private static final int CONNECT_TIMEOUT = 60_000; // milliseconds
+  private static final String COMMON_PARALLELISM =
+      "java.util.concurrent.ForkJoinPool.common.parallelism";
+
+  private static volatile FitnessFarm instance;
+
+  private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+  private final AtomicInteger liveWorkers = new AtomicInteger();
+  private final List<Process> processes = new ArrayList<>();
+  private final Function<Request, List<Reply>> localSimulation;
+
+  private record Job(Request request, CompletableFuture<List<Reply>> replies) {
+
+    boolean isDone() {
+      return replies.isDone();
+    }
+  }
+
+  private FitnessFarm(int workers, Function<Request, List<Reply>> localSimulation) {
+    this.localSimulation = localSimulation;
+    try (var server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout(CONNECT_TIMEOUT);
+      for (var i = 0; i < workers; i++) {
+        processes.add(startWorker(server.getLocalPort(), workers));
+      }
+      for (var i = 0; i < workers; i++) {
+        var socket = server.accept();
+        socket.setTcpNoDelay(true);
+        liveWorkers.incrementAndGet();
+        var thread = new Thread(() -> serve(socket), "fitness-worker-" + i);
+        thread.setDaemon(true);
+        thread.start();
+      }
+    } catch (SocketTimeoutException e) {
+      logger.warn("Only {} of {} fitness workers connected", liveWorkers.get(), workers);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> processes.forEach(Process::destroy)));
+    logger.info("Fitness farm started with {} workers", liveWorkers.get());
+  }
+
+  public static boolean isEnabled() {
+    return FITNESS_WORKERS > 0 || instance != null;
+  }
+
+  private static synchronized FitnessFarm getInstance() {
+    if (instance == null) {
+      instance = new FitnessFarm(FITNESS_WORKERS, FitnessWorker::simulate);
+    }
+    return instance;
+  }
+
+  // enables the farm without workers, simulating every batch with the given function, for tests
+  static synchronized void startLocally(Function<Request, List<Reply>> simulation) {
+    instance = new FitnessFarm(0, simulation);
+  }
+
+  static synchronized void stop() {
+    instance = null;
+  }
+
+  // simulates the solutions against their cutoffs and sets their fitness
+  public static void evaluate(Config config, List<? extends Solution> solutions, double[] cutoffs) {
+    getInstance().evaluateAll(config, solutions, cutoffs);
+  }
+
+  private void evaluateAll(Config config, List<? extends Solution> solutions, double[] cutoffs) {
+    var pending = new ArrayList<Job>();
+    for (var start = 0; start < solutions.size(); start += FITNESS_BATCH_SIZE) {
+      var end = Math.min(start + FITNESS_BATCH_SIZE, solutions.size());
+      var allocations =
+          solutions.subList(start, end).stream().map(Solution::getAllocation).toList();
+      var request = new Request(config, allocations, Arrays.copyOfRange(cutoffs, start, end));
+      var job = new Job(request, new CompletableFuture<>());
+      jobs.add(job);
+      pending.add(job);
+    }
+    if (liveWorkers.get() == 0) {
+      evaluateQueuedLocally();
+    }
+
+    for (var i = 0; i < pending.size(); i++) {
+      var replies = await(pending.get(i));
+      for (var j = 0; j < replies.size(); j++) {
+        var reply = replies.get(j);
+        solutions
+            .get(i * FITNESS_BATCH_SIZE + j)
+            .setEvaluation(reply.simulatedFitness(), reply.survivalRate(), reply.truncated());
+      }
+    }
+  }
+
+  // waits for the replies of the job, queueing it again each time the deadline passes
+  private List<Reply> await(Job job) {
+    while (true) {
+      try {
+        return job.replies().get(FITNESS_BATCH_TIMEOUT, TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        logger.warn("Fitness batch not answered in {} s, requeueing it", FITNESS_BATCH_TIMEOUT);
+        jobs.add(job);
+        if (liveWorkers.get() == 0) {
+          evaluateQueuedLocally();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for fitness workers", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  // serves batches until the worker fails, then hands its current batch back to the queue
+  private void serve(Socket socket) {
+    Job job = null;
+    try (socket) {
+      var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      while (true) {
+        job = jobs.take();
+        if (job.isDone()) {
+          // a requeued batch that was answered in the meantime
+          job = null;
+          continue;
+        }
+        FitnessProtocol.writeRequest(out, job.request());
+        job.replies().complete(FitnessProtocol.readReplies(in, job.request().allocations().size()));
+        job = null;
+      }
+    } catch (IOException e) {
+      logger.warn("Fitness worker failed, rebalancing its work: {}", e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (job != null) {
+        jobs.add(job);
+      }
+      if (liveWorkers.decrementAndGet() == 0) {
+        logger.warn("All fitness workers failed, simulating locally");
+        evaluateQueuedLocally();
+      }
+    }
+  }
+
+  private void evaluateQueuedLocally() {
+    Job job;
+    while ((job = jobs.poll()) != null) {
+      if (!job.isDone()) {
+        job.replies().complete(localSimulation.apply(job.request()));
+      }
+    }
+  }
+
+  // the worker runs with the class path and JVM options of this process, apart from the
+  // parallelism of its common pool, so that the workers share the cores of this machine
+  private static Process startWorker(int port, int workers) throws IOException {
+    var parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / workers);
+    var command = new ArrayList<String>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+        .filter(argument -> !argument.startsWith("-agentlib") && !argument.startsWith("-javaagent"))
+        .filter(argument -> !argument.startsWith("-D" + COMMON_PARALLELISM + "="))
+        .forEach(command::add);
+    command.add("-D" + COMMON_PARALLELISM + "=" + parallelism);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(FitnessWorker.class.getName());
+    command.add(String.valueOf(port));
+    return new ProcessBuilder(command).inheritIO().start();
+  }
+}
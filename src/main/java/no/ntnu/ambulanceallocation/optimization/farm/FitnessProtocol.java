@@ -0,0 +1,153 @@
+package no.ntnu.ambulanceallocation.optimization.farm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.StationCounts;
+import no.ntnu.ambulanceallocation.optimization.ga.ConstraintStrategy;
+import no.ntnu.ambulanceallocation.simulation.BaseStation;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.SimulationResults;
+import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchDelay;
+import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchPolicy;
+import no.ntnu.ambulanceallocation.simulation.dispatch.HandlingDelay;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentDistribution;
+
+/***
+ * Binary frames exchanged between the fitness farm and its workers. A request holds the config
+ * and, for every allocation in the batch, one byte per base station and shift with its number of
+ * ambulances and the cutoff to simulate against. A reply holds the simulated fitness, survival
+ * rate and whether the simulation was truncated, in the same order as the request.
+ ***/
+final class FitnessProtocol {
+
+  private FitnessProtocol() {}
+
+  record Request(Config config, List<Allocation> allocations, double[] cutoffs) {}
+
+  record Reply(double simulatedFitness, double survivalRate, boolean truncated) {
+
+    static Reply of(SimulationResults results, Config config) {
+      var simulatedFitness =
+          results.simulatedFitness(config.USE_URGENCY_FITNESS(), config.RESPONSE_TIME_PERCENTILE());
+      var survivalRate = results.isTruncated() ? 0.0 : results.averageSurvivalRate();
+      return new Reply(simulatedFitness, survivalRate, results.isTruncated());
+    }
+  }
+
+  static void writeRequest(DataOutputStream out, Request request) throws IOException {
+    writeConfig(out, request.config());
+    var allocations = request.allocations();
+    out.writeInt(allocations.size());
+    out.writeByte(BaseStation.size());
+    for (var i = 0; i < allocations.size(); i++) {
+      var counts = allocations.get(i).counts();
+      out.writeByte(counts.shifts());
+      for (var shift = 0; shift < counts.shifts(); shift++) {
+        for (var baseStation = 0; baseStation < BaseStation.size(); baseStation++) {
+          out.writeByte(counts.get(shift, baseStation));
+        }
+      }
+      out.writeDouble(request.cutoffs()[i]);
+    }
+    out.flush();
+  }
+
+  static Request readRequest(DataInputStream in) throws IOException {
+    var config = readConfig(in);
+    var size = in.readInt();
+    var baseStations = in.readUnsignedByte();
+    if (baseStations != BaseStation.size()) {
+      throw new IOException(
+          String.format("expected %d base stations, got %d", BaseStation.size(), baseStations));
+    }
+    var allocations = new ArrayList<Allocation>(size);
+    var cutoffs = new double[size];
+    for (var i = 0; i < size; i++) {
+      var counts = new int[in.readUnsignedByte()][baseStations];
+      for (var shiftCounts : counts) {
+        for (var baseStation = 0; baseStation < baseStations; baseStation++) {
+          shiftCounts[baseStation] = in.readUnsignedByte();
+        }
+      }
+      allocations.add(StationCounts.of(counts).toAllocation());
+      cutoffs[i] = in.readDouble();
+    }
+    return new Request(config, allocations, cutoffs);
+  }
+
+  static void writeReplies(DataOutputStream out, List<Reply> replies) throws IOException {
+    out.writeInt(replies.size());
+    for (var reply : replies) {
+      out.writeDouble(reply.simulatedFitness());
+      out.writeDouble(reply.survivalRate());
+      out.writeBoolean(reply.truncated());
+    }
+    out.flush();
+  }
+
+  static List<Reply> readReplies(DataInputStream in, int expected) throws IOException {
+    var size = in.readInt();
+    if (size != expected) {
+      throw new IOException(String.format("expected %d replies, got %d", expected, size));
+    }
+    var replies = new ArrayList<Reply>(size);
+    for (var i = 0; i < size; i++) {
+      replies.add(new Reply(in.readDouble(), in.readDouble(), in.readBoolean()));
+    }
+    return replies;
+  }
+
+  private static void writeConfig(DataOutputStream out, Config config) throws IOException {
+    writeDateTime(out, config.START_DATE_TIME());
+    writeDateTime(out, config.END_DATE_TIME());
+    out.writeShort(config.NUMBER_OF_AMBULANCES_DAY());
+    out.writeShort(config.NUMBER_OF_AMBULANCES_NIGHT());
+    out.writeByte(config.DISPATCH_POLICY().ordinal());
+    out.writeInt(config.BUFFER_SIZE());
+    out.writeInt(config.UPDATE_LOCATION_PERIOD());
+    out.writeBoolean(config.USE_URGENCY_FITNESS());
+    out.writeDouble(config.RESPONSE_TIME_PERCENTILE());
+    out.writeBoolean(config.ENABLE_REDISPATCH());
+    out.writeBoolean(config.ENABLE_QUEUE_NEXT());
+    out.writeByte(config.DISPATCH_DELAY().ordinal());
+    out.writeByte(config.HANDLING_DELAY().ordinal());
+    out.writeBoolean(config.HISTORIC_HOSPITAL_TIME());
+    out.writeByte(config.INCIDENT_DISTRIBUTION().ordinal());
+    out.writeByte(config.CONSTRAINT_STRATEGY().ordinal());
+  }
+
+  private static Config readConfig(DataInputStream in) throws IOException {
+    return new Config(
+        readDateTime(in),
+        readDateTime(in),
+        in.readShort(),
+        in.readShort(),
+        DispatchPolicy.values()[in.readUnsignedByte()],
+        in.readInt(),
+        in.readInt(),
+        in.readBoolean(),
+        in.readDouble(),
+        in.readBoolean(),
+        in.readBoolean(),
+        DispatchDelay.values()[in.readUnsignedByte()],
+        HandlingDelay.values()[in.readUnsignedByte()],
+        in.readBoolean(),
+        IncidentDistribution.values()[in.readUnsignedByte()],
+        ConstraintStrategy.values()[in.readUnsignedByte()]);
+  }
+
+  private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime)
+      throws IOException {
+    out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+  }
+
+  private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+    return LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+  }
+}
@@ -0,0 +1,76 @@
+package no.ntnu.ambulanceallocation.optimization.farm;
+
+import static no.ntnu.ambulanceallocation.Parameters.SIMULATION_SLICE;
+import static no.ntnu.ambulanceallocation.Parameters.SIMULATION_SLICE_BUFFER_SIZE;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Reply;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Request;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Worker process of the fitness farm. Connects to the coordinator on the loopback port given as
+ * the only argument and simulates one batch of allocations at a time until the coordinator
+ * closes the connection. The route and incident data is loaded from disk like in any other run.
+ ***/
+public final class FitnessWorker {
+
+  private static final Logger logger = LoggerFactory.getLogger(FitnessWorker.class);
+
+  private FitnessWorker() {}
+
+  public static void main(String[] args) throws IOException {
+    var port = Integer.parseInt(args[0]);
+
+    try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+      socket.setTcpNoDelay(true);
+      var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      logger.info("Fitness worker connected to port {}", port);
+
+      while (true) {
+        FitnessProtocol.Request request;
+        try {
+          request = FitnessProtocol.readRequest(in);
+        } catch (EOFException e) {
+          logger.info("Fitness worker disconnected");
+          return;
+        }
+        FitnessProtocol.writeReplies(out, simulate(request));
+      }
+    }
+  }
+
+  /***
+   * Simulates a batch the way this process would simulate it without the farm, in time slices
+   * when SIMULATION_SLICE is set. Checkpoints are not sent to the workers, so every allocation is
+   * simulated from the start of the period.
+   ***/
+  static List<Reply> simulate(Request request) {
+    var config = request.config();
+    var results =
+        SIMULATION_SLICE > 0
+            ? request.allocations().stream()
+                .map(
+                    allocation ->
+                        Simulation.simulateSliced(
+                            config,
+                            allocation,
+                            Duration.ofHours(SIMULATION_SLICE),
+                            SIMULATION_SLICE_BUFFER_SIZE))
+                .toList()
+            : Simulation.simulateAll(config, request.allocations(), request.cutoffs());
+    return results.stream().map(result -> Reply.of(result, config)).toList();
+  }
+}
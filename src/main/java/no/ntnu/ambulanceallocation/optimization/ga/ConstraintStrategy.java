@@ -3,24 +3,20 @@ package no.ntnu.ambulanceallocation.optimization.ga;
 import java.util.List;
 
 public enum ConstraintStrategy {
-  NONE {
-    @Override
-    void add(List<Individual> population, Individual individual) {
-      population.add(individual);
-    }
-  },
-  PENALTY {
-    @Override
-    void add(List<Individual> population, Individual individual) {
-      population.add(individual);
-    }
-  },
+  NONE,
+  PENALTY,
   CHANGE {
     @Override
-    void add(List<Individual> population, Individual individual) {
-      population.add((Individual) individual.conformToConstraints());
+    Individual apply(Individual individual) {
+      return (Individual) individual.conformToConstraints();
     }
   };
 
-  abstract void add(List<Individual> population, Individual individual);
+  Individual apply(Individual individual) {
+    return individual;
+  }
+
+  void add(List<Individual> population, Individual individual) {
+    population.add(apply(individual));
+  }
 }
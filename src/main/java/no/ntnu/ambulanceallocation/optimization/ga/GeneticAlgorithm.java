@@ -6,15 +6,25 @@ import static no.ntnu.ambulanceallocation.Parameters.CROWDING;
 import static no.ntnu.ambulanceallocation.Parameters.DISTINCT;
 import static no.ntnu.ambulanceallocation.Parameters.DIVERSIFY_GENERATIONS;
 import static no.ntnu.ambulanceallocation.Parameters.DIVERSITY_LIMIT;
+import static no.ntnu.ambulanceallocation.Parameters.EARLY_ABORT;
 import static no.ntnu.ambulanceallocation.Parameters.ELITE_SIZE;
+import static no.ntnu.ambulanceallocation.Parameters.ELITIST_REPLACEMENT;
 import static no.ntnu.ambulanceallocation.Parameters.GENERATIONS_COMBINED;
 import static no.ntnu.ambulanceallocation.Parameters.GENERATIONS_ISLAND;
 import static no.ntnu.ambulanceallocation.Parameters.INITIALIZER;
 import static no.ntnu.ambulanceallocation.Parameters.ISLANDS;
 import static no.ntnu.ambulanceallocation.Parameters.MAX_RUNNING_TIME;
+import static no.ntnu.ambulanceallocation.Parameters.MIGRATION_INTERVAL;
+import static no.ntnu.ambulanceallocation.Parameters.MIGRATION_SIZE;
+import static no.ntnu.ambulanceallocation.Parameters.MIGRATION_TOPOLOGY;
 import static no.ntnu.ambulanceallocation.Parameters.MUTATION_PROBABILITY;
 import static no.ntnu.ambulanceallocation.Parameters.MUTATION_TUNE_START;
 import static no.ntnu.ambulanceallocation.Parameters.POPULATION_SIZE;
+import static no.ntnu.ambulanceallocation.Parameters.SAVE_DIVERSITY;
+import static no.ntnu.ambulanceallocation.Parameters.SAVE_DIVERSITY_OLD;
+import static no.ntnu.ambulanceallocation.Parameters.SURROGATE_CANDIDATES;
+import static no.ntnu.ambulanceallocation.Parameters.SURROGATE_EXPLORATION;
+import static no.ntnu.ambulanceallocation.Parameters.SURROGATE_RIDGE;
 import static no.ntnu.ambulanceallocation.Parameters.TOURNAMENT_SIZE;
 import static no.ntnu.ambulanceallocation.Parameters.TOURNAMENT_TUNE_END;
 import static no.ntnu.ambulanceallocation.utils.Utils.nextBoolean;
@@ -22,20 +32,25 @@ import static no.ntnu.ambulanceallocation.utils.Utils.randomDouble;
 
 import com.github.sh0nk.matplotlib4j.Plot;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import no.ntnu.ambulanceallocation.experiments.Result;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache;
 import no.ntnu.ambulanceallocation.optimization.Optimizer;
 import no.ntnu.ambulanceallocation.optimization.Solution;
-import no.ntnu.ambulanceallocation.simulation.BaseStation;
+import no.ntnu.ambulanceallocation.optimization.Surrogate;
 import no.ntnu.ambulanceallocation.simulation.Config;
 import no.ntnu.ambulanceallocation.utils.Tuple;
 import no.ntnu.ambulanceallocation.utils.Utils;
@@ -44,18 +59,18 @@ import org.slf4j.LoggerFactory;
 
 public class GeneticAlgorithm implements Optimizer {
 
-  private static final ExecutorService executor = Executors.newCachedThreadPool();
+  private static final int COMBINED_STREAM = -1; // islands draw from the stream of their index
 
   private final Logger logger = LoggerFactory.getLogger(GeneticAlgorithm.class);
 
-  private final List<Double> bestFitness = new ArrayList<>();
-  private final List<Double> averageFitness = new ArrayList<>();
-  private final List<Double> diversity = new ArrayList<>();
-  private final List<Double> diversityOld = new ArrayList<>();
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final RunStatistics statistics = new RunStatistics();
+  private final List<RunStatistics> islandStatistics = new ArrayList<>();
 
   protected Config config;
   protected Population population;
   protected Set<Population> populationIslands;
+  private Surrogate surrogate;
 
   public GeneticAlgorithm() {
     this.config = Config.defaultConfig();
@@ -73,20 +88,27 @@ public class GeneticAlgorithm implements Optimizer {
   @Override
   public void optimize() {
     clearRunStatistics();
-    population = new Population(POPULATION_SIZE, INITIALIZER, config);
     populationIslands = new HashSet<>();
+    surrogate = new Surrogate(SURROGATE_RIDGE, POPULATION_SIZE);
 
     Runnable optimizationWrapper =
         () -> {
           var startTime = System.nanoTime();
-          var generation = 1;
+          // islands have used up the first generations of the crossover and mutation schedules
+          var generation = ISLANDS > 0 ? GENERATIONS_ISLAND : 1;
           var combinedGeneration = 1;
-          var runningCombined = ISLANDS == 0;
           var noImprovementCount = 0;
           var bestFitness = 0.0;
 
           logger.info("Starting GA optimizer...");
-          population.evaluate();
+          if (ISLANDS > 0) {
+            evolveIslands(startTime, ISLANDS);
+            combineIslands();
+          } else {
+            population = new Population(POPULATION_SIZE, INITIALIZER, config);
+            population.evaluate();
+            train(population);
+          }
           printAndSaveSummary(logger, generation, population);
 
           while (combinedGeneration < GENERATIONS_COMBINED
@@ -94,86 +116,10 @@ public class GeneticAlgorithm implements Optimizer {
 
             // plotPopulation();
 
-            if (!runningCombined && generation == GENERATIONS_ISLAND) {
-              populationIslands.add(population);
-              logger.info("islands: {}", populationIslands.size());
-              if (populationIslands.size() == ISLANDS) {
-                combineIslands();
-                runningCombined = true;
-              } else {
-                newIsland();
-                generation = 1;
-              }
-              bestFitness = 0.0;
-              printAndSaveSummary(logger, generation, population);
-            }
-
-            var nextPopulation = new Population();
-            var nonElite = POPULATION_SIZE - ELITE_SIZE;
-            if (DISTINCT) {
-              nonElite = POPULATION_SIZE;
-            }
-            var nonEliteFinal = nonElite;
-            var countDownLatch = new CountDownLatch(nonEliteFinal);
-            // var tournamentSize = getTournamentSize(generation);
-            var crossoverP = getCrossoverProbability(generation);
-            var mutationP = getMutationProbability(generation);
-            var f = getScalingFactor(population.getDiversity());
-
-            for (var i = 0; i < nonEliteFinal / 2; i++) {
-              executor.execute(
-                  () -> {
-                    var parents = population.selection(TOURNAMENT_SIZE);
-                    var offspringA = new Individual(parents.first());
-                    var offspringB = new Individual(parents.second());
-
-                    offspringA.recombineWith(offspringB, crossoverP);
-
-                    offspringA.mutate(mutationP);
-                    offspringB.mutate(mutationP);
-
-                    if (CROWDING) {
-                      var offspring = competeCrowding(parents, offspringA, offspringB, f);
-                      offspringA = offspring.first();
-                      offspringB = offspring.second();
-                    }
-
-                    synchronized (nextPopulation) {
-                      if (nextPopulation.size() < nonEliteFinal) {
-                        if (!DISTINCT || offspringA.hasChanged()) {
-                          nextPopulation.add(offspringA, config.CONSTRAINT_STRATEGY());
-                        }
-                        countDownLatch.countDown();
-                        if (nextPopulation.size() < nonEliteFinal) {
-                          if (!DISTINCT || offspringB.hasChanged()) {
-                            nextPopulation.add(offspringB, config.CONSTRAINT_STRATEGY());
-                          }
-                          countDownLatch.countDown();
-                        }
-                      }
-                    }
-                  });
-            }
-
-            try {
-              countDownLatch.await();
-            } catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-
-            nextPopulation.evaluate();
-            if (DISTINCT) {
-              population.reducePopulation(
-                  Math.max(ELITE_SIZE, POPULATION_SIZE - nextPopulation.size()));
-              population.addAll(nextPopulation);
-              population.reducePopulation(POPULATION_SIZE);
-            } else {
-              population.reducePopulation(ELITE_SIZE);
-              population.addAll(nextPopulation);
-            }
+            nextGeneration(population, generation, executor, statistics, COMBINED_STREAM);
 
             generation++;
-            if (runningCombined) combinedGeneration++;
+            combinedGeneration++;
             var newBest = 1.0 - population.getBestFitness();
             if (newBest > bestFitness) {
               bestFitness = newBest;
@@ -184,8 +130,8 @@ public class GeneticAlgorithm implements Optimizer {
 
             printAndSaveSummary(logger, generation, population);
 
-            if (population.getDiversity() < DIVERSITY_LIMIT
-                && noImprovementCount > DIVERSIFY_GENERATIONS) {
+            if (noImprovementCount > DIVERSIFY_GENERATIONS
+                && population.getDiversity() < DIVERSITY_LIMIT) {
               diversify();
               noImprovementCount = 0;
             }
@@ -197,20 +143,201 @@ public class GeneticAlgorithm implements Optimizer {
               reset(generation);
             }*/
           }
-
-          if (!runningCombined || ISLANDS == 0) {
-            populationIslands.add(population);
-            population =
-                populationIslands.stream()
-                    .min(Comparator.comparingDouble(Population::getBestFitness))
-                    .orElse(population);
-            printAndSaveSummary(logger, generation, population);
-          }
           logger.info("GA finished successfully.");
         };
 
     var optimizationTime = Utils.timeIt(optimizationWrapper);
     logger.info("Total GA optimization time: " + optimizationTime + " seconds");
+    logger.info("Fitness cache: {}", FitnessCache.getStatistics());
+  }
+
+  /***
+   * Evolves all islands at the same time. Every island breeds on its own worker threads, which
+   * draw from random streams of that island only, and keeps its own run statistics. Every
+   * MIGRATION_INTERVAL generations an island sends copies of its best individuals to the mailbox
+   * of another island and takes in whatever has arrived in its own, so islands never wait for
+   * each other.
+   ***/
+  private void evolveIslands(long startTime, int islandCount) {
+    var mailboxes = new ArrayList<Queue<Individual>>();
+    for (var i = 0; i < islandCount; i++) {
+      mailboxes.add(new ConcurrentLinkedQueue<>());
+      islandStatistics.add(new RunStatistics());
+    }
+    var workers = Math.max(1, Runtime.getRuntime().availableProcessors() / islandCount);
+    var islands = new ArrayList<Future<Population>>();
+    var islandExecutors = new ArrayList<ExecutorService>();
+    var islandExecutor = Executors.newFixedThreadPool(islandCount);
+    for (var i = 0; i < islandCount; i++) {
+      var island = i;
+      var islandWorkers = Executors.newFixedThreadPool(workers, islandThreads(island));
+      islandExecutors.add(islandWorkers);
+      islands.add(
+          islandExecutor.submit(
+              () -> {
+                Utils.useStream(island);
+                var islandPopulation = new Population(POPULATION_SIZE, INITIALIZER, config);
+                islandPopulation.evaluate();
+                train(islandPopulation);
+                logger.info("Started island {}.", island);
+
+                var statistics = islandStatistics.get(island);
+                for (var generation = 1;
+                    generation < GENERATIONS_ISLAND && elapsedTime(startTime) < MAX_RUNNING_TIME;
+                    generation++) {
+                  if (MIGRATION_INTERVAL > 0 && generation % MIGRATION_INTERVAL == 0) {
+                    migrate(islandPopulation, island, mailboxes);
+                  }
+                  nextGeneration(
+                      islandPopulation, generation, islandWorkers, statistics, island);
+                  logger.info("Island {}:", island);
+                  printAndSaveSummary(logger, generation, islandPopulation, statistics);
+                }
+                return islandPopulation;
+              }));
+    }
+    islandExecutor.shutdown();
+
+    for (var island : islands) {
+      try {
+        populationIslands.add(island.get());
+      } catch (InterruptedException | ExecutionException e) {
+        e.printStackTrace();
+      }
+    }
+    islandExecutors.forEach(ExecutorService::shutdown);
+    logger.info("islands: {}", populationIslands.size());
+  }
+
+  private static ThreadFactory islandThreads(int island) {
+    var threads = new AtomicInteger();
+    return runnable ->
+        new Thread(runnable, "island-" + island + "-worker-" + threads.incrementAndGet());
+  }
+
+  private void migrate(Population island, int islandIndex, List<Queue<Individual>> mailboxes) {
+    var target = MIGRATION_TOPOLOGY.target(islandIndex, mailboxes.size());
+    for (var emigrant : island.elite(MIGRATION_SIZE)) {
+      mailboxes.get(target).offer(new Individual(emigrant));
+    }
+
+    var immigrants = new Population();
+    Individual immigrant;
+    while ((immigrant = mailboxes.get(islandIndex).poll()) != null) {
+      immigrants.add(immigrant, ConstraintStrategy.NONE);
+    }
+    if (DISTINCT) {
+      // immigrants the island already has, or that arrived twice, would be duplicates
+      immigrants.removeDuplicates(island);
+    }
+    if (immigrants.size() > 0) {
+      island.addAll(immigrants);
+      island.reducePopulation(POPULATION_SIZE);
+      logger.info("Island {} received {} migrants.", islandIndex, immigrants.size());
+    }
+  }
+
+  // breeds the next generation of the population in place, on the threads of the executor. Every
+  // breeding task draws from the stream of its population, generation and index
+  private void nextGeneration(
+      Population population,
+      int generation,
+      ExecutorService executor,
+      RunStatistics statistics,
+      int stream) {
+    var nextPopulation = new Population();
+    var nonElite = POPULATION_SIZE - ELITE_SIZE;
+    if (DISTINCT) {
+      nonElite = POPULATION_SIZE;
+    }
+    var nonEliteFinal = nonElite;
+    // breed more offspring than can be simulated and let the surrogate pick among them
+    var screening = SURROGATE_CANDIDATES > 1 && surrogate.isTrained();
+    var offspringSize = screening ? nonEliteFinal * SURROGATE_CANDIDATES : nonEliteFinal;
+    var countDownLatch = new CountDownLatch(offspringSize);
+    // var tournamentSize = getTournamentSize(generation);
+    var crossoverP = getCrossoverProbability(generation);
+    var mutationP = getMutationProbability(generation);
+    // only crowding uses the scaling factor
+    var f = CROWDING ? getScalingFactor(population.getDiversity()) : 0.0;
+
+    for (var i = 0; i < offspringSize / 2; i++) {
+      var task = i;
+      executor.execute(
+          () -> {
+            Utils.useStream(stream, generation, task);
+            var parents = population.selection(TOURNAMENT_SIZE);
+            var offspringA = new Individual(parents.first());
+            var offspringB = new Individual(parents.second());
+
+            offspringA.recombineWith(offspringB, crossoverP);
+
+            offspringA.mutate(mutationP);
+            offspringB.mutate(mutationP);
+
+            if (CROWDING) {
+              var offspring = competeCrowding(parents, offspringA, offspringB, f);
+              offspringA = offspring.first();
+              offspringB = offspring.second();
+            }
+
+            synchronized (nextPopulation) {
+              if (nextPopulation.size() < offspringSize) {
+                if (!DISTINCT || offspringA.hasChanged()) {
+                  nextPopulation.add(offspringA, config.CONSTRAINT_STRATEGY());
+                }
+                countDownLatch.countDown();
+                if (nextPopulation.size() < offspringSize) {
+                  if (!DISTINCT || offspringB.hasChanged()) {
+                    nextPopulation.add(offspringB, config.CONSTRAINT_STRATEGY());
+                  }
+                  countDownLatch.countDown();
+                }
+              }
+            }
+          });
+    }
+
+    try {
+      countDownLatch.await();
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    }
+
+    if (DISTINCT) {
+      logger.info("Duplicate offspring: {}", nextPopulation.removeDuplicates(population));
+    }
+    var screenedOut =
+        screening ? nextPopulation.screen(surrogate, nonEliteFinal, SURROGATE_EXPLORATION) : 0;
+    if (DISTINCT && ELITIST_REPLACEMENT) {
+      // offspring that do not beat the worst individual of the current population are dropped,
+      // so with early abort they are only simulated until that is certain
+      var worstFitness = population.getWorstFitness();
+      nextPopulation.evaluate(EARLY_ABORT ? worstFitness : Double.POSITIVE_INFINITY);
+      logger.info("Dropped offspring: {}", nextPopulation.removeWorseThan(worstFitness));
+    } else {
+      nextPopulation.evaluate();
+    }
+    if (screening) {
+      var error = surrogate.meanAbsoluteError(nextPopulation.getList());
+      logger.info("Surrogate error: {}, simulations avoided: {}", error, screenedOut);
+      statistics.addSurrogateSummary(error, screenedOut);
+    }
+    train(nextPopulation);
+    if (DISTINCT) {
+      population.reducePopulation(Math.max(ELITE_SIZE, POPULATION_SIZE - nextPopulation.size()));
+      population.addAll(nextPopulation);
+      population.reducePopulation(POPULATION_SIZE);
+    } else {
+      population.reducePopulation(ELITE_SIZE);
+      population.addAll(nextPopulation);
+    }
+  }
+
+  private void train(Population population) {
+    if (SURROGATE_CANDIDATES > 1) {
+      surrogate.addAll(population.getList());
+    }
   }
 
   private Tuple<Individual> competeCrowding(
@@ -266,13 +393,8 @@ public class GeneticAlgorithm implements Optimizer {
   private void combineIslands() {
     var combinedPopulation = new Population();
     for (var pop : populationIslands) {
-      var allocation = new HashMap<Integer, Integer>();
-      for (var b : BaseStation.values()) {
-        var f = Collections.frequency(pop.get(0).getAllocation().get(0), b.getId());
-        allocation.put(b.getId(), f);
-      }
-      logger.info("day: {}", allocation);
-      pop.reducePopulation(POPULATION_SIZE / ISLANDS);
+      logger.info("day: {}", Arrays.toString(pop.get(0).getAllocation().counts().getShift(0)));
+      pop.reducePopulation(POPULATION_SIZE / populationIslands.size());
       combinedPopulation.addAll(pop);
     }
     population = combinedPopulation;
@@ -291,12 +413,12 @@ public class GeneticAlgorithm implements Optimizer {
     printAndSaveSummary(logger, generation, population);
   }
 
-  private double getCrossoverProbability(int generation) {
+  static double getCrossoverProbability(int generation) {
     var generationReduction = generation / 200.0;
     return Math.max(CROSSOVER_PROBABILITY, CROSSOVER_TUNE_START - generationReduction);
   }
 
-  private double getMutationProbability(int generation) {
+  static double getMutationProbability(int generation) {
     var generationReduction = generation / 200.0;
     return Math.max(MUTATION_PROBABILITY, MUTATION_TUNE_START - generationReduction);
   }
@@ -320,13 +442,19 @@ public class GeneticAlgorithm implements Optimizer {
     return diversity / 20;
   }
 
+  // kept apart from the run statistics, so the saved GA results keep their columns
+  public Progress getProgress() {
+    return statistics.progress();
+  }
+
+  // the islands follow the combined population, each column prefixed with its island
   @Override
   public Result getRunStatistics() {
     var runStatistics = new Result();
-    runStatistics.saveColumn("best", bestFitness);
-    runStatistics.saveColumn("average", averageFitness);
-    runStatistics.saveColumn("diversity", diversity);
-    runStatistics.saveColumn("diversityOld", diversityOld);
+    statistics.saveTo(runStatistics, "");
+    for (var island = 0; island < islandStatistics.size(); island++) {
+      islandStatistics.get(island).saveTo(runStatistics, "island" + island + "_");
+    }
     return runStatistics;
   }
 
@@ -340,12 +468,15 @@ public class GeneticAlgorithm implements Optimizer {
   }
 
   protected void printAndSaveSummary(Logger logger, int generation, Population population) {
+    printAndSaveSummary(logger, generation, population, statistics);
+  }
+
+  private void printAndSaveSummary(
+      Logger logger, int generation, Population population, RunStatistics statistics) {
     logger.info("{} generation: {}", getAbbreviation(), generation);
     var best = population.best();
     var bestFitness = best.getFitness();
     var averageFitness = population.getAverageFitness();
-    var diversity = population.getDiversity();
-    var diversityOld = population.getDiversityOld();
     if (config.USE_URGENCY_FITNESS()) {
       logger.info("Best fitness: {}", 1.0 - bestFitness);
       logger.info("Average fitness: {}", 1.0 - averageFitness);
@@ -355,12 +486,18 @@ public class GeneticAlgorithm implements Optimizer {
       logger.info("Average fitness: {}", averageFitness);
       logger.info("Best survival rate: {}", bestSurvivalRate);
     }
-    logger.info("Diversity: {}", diversity);
-    logger.info("DiversityOld: {}", diversityOld);
-    this.bestFitness.add(bestFitness);
-    this.averageFitness.add(averageFitness);
-    this.diversity.add(diversity);
-    this.diversityOld.add(diversityOld);
+    statistics.addSummary(bestFitness, averageFitness);
+    // the diversity is only measured for the run statistics when they are asked for
+    if (SAVE_DIVERSITY) {
+      var diversity = population.getDiversity();
+      logger.info("Diversity: {}", diversity);
+      statistics.diversity.add(diversity);
+    }
+    if (SAVE_DIVERSITY_OLD) {
+      var diversityOld = population.getDiversityOld();
+      logger.info("DiversityOld: {}", diversityOld);
+      statistics.diversityOld.add(diversityOld);
+    }
   }
 
   protected void plotPopulation() {
@@ -387,9 +524,58 @@ public class GeneticAlgorithm implements Optimizer {
   }
 
   protected void clearRunStatistics() {
-    bestFitness.clear();
-    averageFitness.clear();
-    diversity.clear();
-    diversityOld.clear();
+    statistics.clear();
+    islandStatistics.clear();
+  }
+
+  /***
+   * The summaries of one population over a run. The combined population and every island have
+   * their own, so islands evolving at the same time never write to the same lists.
+   ***/
+  private static final class RunStatistics {
+
+    private final List<Double> time = new ArrayList<>();
+    private final List<Double> bestFitness = new ArrayList<>();
+    private final List<Double> averageFitness = new ArrayList<>();
+    private final List<Double> diversity = new ArrayList<>();
+    private final List<Double> diversityOld = new ArrayList<>();
+    private final List<Double> surrogateError = new ArrayList<>();
+    private final List<Integer> simulationsAvoided = new ArrayList<>();
+    private long startTime = System.nanoTime();
+
+    private void addSummary(double bestFitness, double averageFitness) {
+      this.time.add((System.nanoTime() - startTime) / 1e9);
+      this.bestFitness.add(bestFitness);
+      this.averageFitness.add(averageFitness);
+    }
+
+    private void addSurrogateSummary(double error, int avoided) {
+      surrogateError.add(error);
+      simulationsAvoided.add(avoided);
+    }
+
+    private Progress progress() {
+      return new Progress(time, bestFitness);
+    }
+
+    private void saveTo(Result result, String prefix) {
+      result.saveColumn(prefix + "best", bestFitness);
+      result.saveColumn(prefix + "average", averageFitness);
+      result.saveColumn(prefix + "diversity", diversity);
+      result.saveColumn(prefix + "diversityOld", diversityOld);
+      result.saveColumn(prefix + "surrogateError", surrogateError);
+      result.saveColumn(prefix + "simulationsAvoided", simulationsAvoided);
+    }
+
+    private void clear() {
+      startTime = System.nanoTime();
+      time.clear();
+      bestFitness.clear();
+      averageFitness.clear();
+      diversity.clear();
+      diversityOld.clear();
+      surrogateError.clear();
+      simulationsAvoided.clear();
+    }
   }
 }
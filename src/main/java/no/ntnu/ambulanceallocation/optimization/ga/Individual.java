@@ -23,12 +23,14 @@ public class Individual extends Solution {
   }
 
   public void mutate(double mutationProbability) {
-    for (var chromosome : getAllocation()) {
+    var allocation = getAllocation();
+    for (var shift = 0; shift < allocation.size(); shift++) {
+      var chromosome = allocation.get(shift);
       for (var i = 0; i < chromosome.size(); i++) {
         if (Utils.randomDouble() < mutationProbability) {
           var newInt = Utils.randomInt(BaseStation.size());
           if (chromosome.get(i) != newInt) {
-            chromosome.set(i, newInt);
+            allocation.set(shift, i, newInt);
             allocationChanged();
           }
         }
@@ -0,0 +1,25 @@
+package no.ntnu.ambulanceallocation.optimization.ga;
+
+import no.ntnu.ambulanceallocation.utils.Utils;
+
+public enum MigrationTopology {
+  RING {
+    @Override
+    int target(int island, int islands) {
+      return (island + 1) % islands;
+    }
+  },
+  RANDOM {
+    @Override
+    int target(int island, int islands) {
+      if (islands == 1) {
+        return island;
+      }
+      var target = Utils.randomInt(islands - 1);
+      return target < island ? target : target + 1;
+    }
+  };
+
+  // the island that receives the migrants of the given island
+  abstract int target(int island, int islands);
+}
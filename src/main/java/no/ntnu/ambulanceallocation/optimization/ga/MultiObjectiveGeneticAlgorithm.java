@@ -11,12 +11,13 @@ import static no.ntnu.ambulanceallocation.Parameters.MAX_RUNNING_TIME;
 import static no.ntnu.ambulanceallocation.Parameters.MUTATION_PROBABILITY;
 import static no.ntnu.ambulanceallocation.Parameters.MUTATION_TUNE_START;
 import static no.ntnu.ambulanceallocation.Parameters.POPULATION_SIZE;
+import static no.ntnu.ambulanceallocation.Parameters.SAVE_DIVERSITY;
+import static no.ntnu.ambulanceallocation.Parameters.SAVE_DIVERSITY_OLD;
 import static no.ntnu.ambulanceallocation.Parameters.TOURNAMENT_SIZE;
 
 import com.github.sh0nk.matplotlib4j.Plot;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -27,7 +28,6 @@ import java.util.concurrent.TimeUnit;
 import no.ntnu.ambulanceallocation.experiments.Result;
 import no.ntnu.ambulanceallocation.optimization.Optimizer;
 import no.ntnu.ambulanceallocation.optimization.Solution;
-import no.ntnu.ambulanceallocation.simulation.BaseStation;
 import no.ntnu.ambulanceallocation.simulation.Config;
 import no.ntnu.ambulanceallocation.utils.Utils;
 import org.slf4j.Logger;
@@ -132,6 +132,9 @@ public class MultiObjectiveGeneticAlgorithm implements Optimizer {
               e.printStackTrace();
             }
 
+            if (DISTINCT) {
+              logger.info("Duplicate offspring: {}", nextPopulation.removeDuplicates(population));
+            }
             population.addAll(nextPopulation);
             population.reduceRankedPopulation(POPULATION_SIZE);
 
@@ -158,12 +161,7 @@ public class MultiObjectiveGeneticAlgorithm implements Optimizer {
   private void combineIslands() {
     var combinedPopulation = new Population();
     for (var pop : populationIslands) {
-      var allocation = new HashMap<Integer, Integer>();
-      for (var b : BaseStation.values()) {
-        var f = Collections.frequency(pop.get(0).getAllocation().get(0), b.getId());
-        allocation.put(b.getId(), f);
-      }
-      logger.info("day: {}", allocation);
+      logger.info("day: {}", Arrays.toString(pop.get(0).getAllocation().counts().getShift(0)));
       combinedPopulation.addAll(pop);
     }
     combinedPopulation.reduceRankedPopulation(POPULATION_SIZE);
@@ -205,8 +203,6 @@ public class MultiObjectiveGeneticAlgorithm implements Optimizer {
     var best = population.bestMO();
     var bestFitness = best.getFitness();
     var averageFitness = population.getAverageFitness();
-    var diversity = population.getDiversity();
-    var diversityOld = population.getDiversityOld();
     if (config.USE_URGENCY_FITNESS()) {
       logger.info("Best fitness: {}", 1.0 - bestFitness);
       logger.info("Average fitness: {}", 1.0 - averageFitness);
@@ -216,11 +212,16 @@ public class MultiObjectiveGeneticAlgorithm implements Optimizer {
       logger.info("Average fitness: {}", averageFitness);
       logger.info("Best survival rate: {}", bestSurvivalRate);
     }
-    logger.info("Diversity: {}", diversity);
     this.bestFitness.add(bestFitness);
     this.averageFitness.add(averageFitness);
-    this.diversity.add(diversity);
-    this.diversityOld.add(diversityOld);
+    if (SAVE_DIVERSITY) {
+      var diversity = population.getDiversity();
+      logger.info("Diversity: {}", diversity);
+      this.diversity.add(diversity);
+    }
+    if (SAVE_DIVERSITY_OLD) {
+      this.diversityOld.add(population.getDiversityOld());
+    }
   }
 
   protected void plotRankedPopulation() {
@@ -1,17 +1,24 @@
 package no.ntnu.ambulanceallocation.optimization.ga;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import no.ntnu.ambulanceallocation.optimization.MultiFidelity;
 import no.ntnu.ambulanceallocation.optimization.Solution;
+import no.ntnu.ambulanceallocation.optimization.Surrogate;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessFarm;
 import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
 import no.ntnu.ambulanceallocation.simulation.BaseStation;
 import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.simulation.Simulation;
 import no.ntnu.ambulanceallocation.utils.Tuple;
 import no.ntnu.ambulanceallocation.utils.Utils;
 
@@ -62,34 +69,77 @@ public class Population implements Iterable<Individual> {
     return population.stream().mapToDouble(Individual::getFitness).min().orElseThrow();
   }
 
+  // mean distance between all pairs of individuals, like the average novelty of the population
   public double getDiversity() {
-    return population.stream().mapToDouble(i -> i.getNovelty(population)).average().orElseThrow();
+    var distances =
+        Arrays.stream(countHistograms())
+            .flatMap(Arrays::stream)
+            .parallel()
+            .mapToDouble(Population::pairDistances)
+            .sum();
+    return distances / ((double) population.size() * population.size());
   }
 
   public double getDiversityOld() {
     var bins = BaseStation.size();
     var entropy = 0.0;
-    var numChromosomes = population.get(0).getAllocation().size();
+    var histograms = countHistograms();
+    var numChromosomes = histograms.length;
 
     for (var chromosomeNum = 0; chromosomeNum < numChromosomes; chromosomeNum++) {
 
       var total = population.size() * population.get(0).getAllocation().get(chromosomeNum).size();
 
-      var finalChromosomeNum = chromosomeNum;
-      var occurrences =
-          population.stream()
-              .flatMap(individual -> individual.getAllocation().get(finalChromosomeNum).stream())
-              .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-              .values();
+      for (var histogram : histograms[chromosomeNum]) {
+        var occurrence = 0;
+        for (var count = 1; count < histogram.length; count++) {
+          occurrence += count * histogram[count];
+        }
+        if (occurrence > 0) {
+          var probability = occurrence / (double) total;
+          entropy -= probability * Utils.logn(probability, bins);
+        }
+      }
+    }
+    return entropy / numChromosomes;
+  }
 
-      var information =
-          occurrences.parallelStream()
-              .mapToDouble(occurrence -> occurrence / (double) total)
-              .map(probability -> probability * Utils.logn(probability, bins));
+  // how many individuals allocate each number of ambulances to a base station, per shift
+  private int[][][] countHistograms() {
+    var counts = population.parallelStream().map(i -> i.getAllocation().counts()).toList();
+    var shifts = counts.get(0).shifts();
+    var histograms = new int[shifts][BaseStation.size()][];
+
+    IntStream.range(0, shifts * BaseStation.size())
+        .parallel()
+        .forEach(
+            slot -> {
+              var shift = slot / BaseStation.size();
+              var baseStation = slot % BaseStation.size();
+              var maxCount = 0;
+              for (var individualCounts : counts) {
+                maxCount = Math.max(maxCount, individualCounts.get(shift, baseStation));
+              }
+              var histogram = new int[maxCount + 1];
+              for (var individualCounts : counts) {
+                histogram[individualCounts.get(shift, baseStation)]++;
+              }
+              histograms[shift][baseStation] = histogram;
+            });
+    return histograms;
+  }
 
-      entropy -= information.sum();
+  // sum of count differences over all ordered pairs of individuals
+  private static double pairDistances(int[] histogram) {
+    var below = 0L;
+    var belowSum = 0L;
+    var distances = 0L;
+    for (var count = 0; count < histogram.length; count++) {
+      distances += histogram[count] * (count * below - belowSum);
+      below += histogram[count];
+      belowSum += (long) count * histogram[count];
     }
-    return entropy / numChromosomes;
+    return 2.0 * distances;
   }
 
   public List<Individual> elite(int eliteSize) {
@@ -116,7 +166,85 @@ public class Population implements Iterable<Individual> {
   }
 
   public void evaluate() {
-    population.parallelStream().forEach(Solution::getFitness);
+    evaluate(Double.POSITIVE_INFINITY);
+  }
+
+  public void evaluate(double cutoff) {
+    // simulate all individuals sharing a config as one parallel batch
+    // allocations evaluated before are taken from the fitness cache instead
+    var unevaluated =
+        population.stream()
+            .filter(individual -> individual.needsEvaluation(cutoff))
+            .filter(individual -> !individual.useCachedFitness())
+            .collect(Collectors.groupingBy(Solution::getConfig));
+
+    unevaluated.forEach(
+        (config, individuals) -> {
+          if (MultiFidelity.isEnabled()) {
+            MultiFidelity.evaluate(
+                config, individuals, cutoff, finalists -> simulate(config, finalists, cutoff));
+          } else {
+            simulate(config, individuals, cutoff);
+          }
+        });
+  }
+
+  private static void simulate(Config config, List<Individual> individuals, double cutoff) {
+    var allocations = individuals.stream().map(Solution::getAllocation).toList();
+    var cutoffs = individuals.stream().mapToDouble(i -> i.getSimulationCutoff(cutoff)).toArray();
+    if (FitnessFarm.isEnabled()) {
+      FitnessFarm.evaluate(config, individuals, cutoffs);
+      return;
+    }
+    var checkpoints = individuals.stream().map(Solution::getCheckpoint).toList();
+    var results = Simulation.simulateAll(config, allocations, cutoffs, checkpoints);
+    for (var i = 0; i < individuals.size(); i++) {
+      individuals.get(i).setSimulationResults(results.get(i));
+    }
+  }
+
+  // offspring equal to an individual of the population or to earlier offspring are removed
+  public int removeDuplicates(Population population) {
+    var seen = new HashSet<Solution>(population.population);
+    var size = this.population.size();
+    this.population.removeIf(individual -> !seen.add(individual));
+    return size - this.population.size();
+  }
+
+  /***
+   * Keeps the given number of individuals, the ones the surrogate predicts to be best apart from
+   * an exploration share picked at random among the rest. Returns how many were screened out.
+   ***/
+  public int screen(Surrogate surrogate, int size, double exploration) {
+    if (population.size() <= size) {
+      return 0;
+    }
+    var predictions = new HashMap<Individual, Double>();
+    population.forEach(
+        individual ->
+            predictions.put(individual, surrogate.predict(individual.getAllocation().counts())));
+    population.sort(Comparator.comparingDouble(predictions::get));
+
+    var exploited = (int) Math.round(size * (1.0 - exploration));
+    var rest = new ArrayList<>(population.subList(exploited, population.size()));
+    Collections.shuffle(rest, Utils.random());
+
+    var screened = new ArrayList<>(population.subList(0, exploited));
+    screened.addAll(rest.subList(0, size - exploited));
+    var screenedOut = population.size() - size;
+    population = screened;
+    return screenedOut;
+  }
+
+  // truncated individuals are removed too, since their fitness bound is above the cutoff
+  public int removeWorseThan(double fitness) {
+    var size = population.size();
+    population.removeIf(individual -> individual.getFitness() > fitness);
+    return size - population.size();
+  }
+
+  public double getWorstFitness() {
+    return population.stream().mapToDouble(Individual::getFitness).max().orElseThrow();
   }
 
   public void evaluateMO() {
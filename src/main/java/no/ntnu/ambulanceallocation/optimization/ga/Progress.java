@@ -0,0 +1,29 @@
+package no.ntnu.ambulanceallocation.optimization.ga;
+
+import java.util.List;
+
+/***
+ * The best fitness of a run at each summary, with the wall time in seconds since the run started,
+ * so that runs can be compared by the time they take to reach a fitness instead of by generation.
+ ***/
+public record Progress(List<Double> times, List<Double> bestFitness) {
+
+  public Progress {
+    times = List.copyOf(times);
+    bestFitness = List.copyOf(bestFitness);
+  }
+
+  // the first time the best fitness was at or below the target, or infinity if it never was
+  public double timeToTarget(double target) {
+    for (var i = 0; i < times.size(); i++) {
+      if (bestFitness.get(i) <= target) {
+        return times.get(i);
+      }
+    }
+    return Double.POSITIVE_INFINITY;
+  }
+
+  public double finalBestFitness() {
+    return bestFitness.get(bestFitness.size() - 1);
+  }
+}
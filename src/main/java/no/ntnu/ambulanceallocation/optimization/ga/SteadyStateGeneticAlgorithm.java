@@ -0,0 +1,189 @@
+package no.ntnu.ambulanceallocation.optimization.ga;
+
+import static no.ntnu.ambulanceallocation.Parameters.DISTINCT;
+import static no.ntnu.ambulanceallocation.Parameters.EARLY_ABORT;
+import static no.ntnu.ambulanceallocation.Parameters.GENERATIONS_COMBINED;
+import static no.ntnu.ambulanceallocation.Parameters.INITIALIZER;
+import static no.ntnu.ambulanceallocation.Parameters.MAX_RUNNING_TIME;
+import static no.ntnu.ambulanceallocation.Parameters.POPULATION_SIZE;
+import static no.ntnu.ambulanceallocation.Parameters.SAVE_DIVERSITY;
+import static no.ntnu.ambulanceallocation.Parameters.STEADY_STATE_WORKERS;
+import static no.ntnu.ambulanceallocation.Parameters.TOURNAMENT_SIZE;
+import static no.ntnu.ambulanceallocation.optimization.ga.GeneticAlgorithm.getCrossoverProbability;
+import static no.ntnu.ambulanceallocation.optimization.ga.GeneticAlgorithm.getMutationProbability;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import no.ntnu.ambulanceallocation.experiments.Result;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache;
+import no.ntnu.ambulanceallocation.optimization.Optimizer;
+import no.ntnu.ambulanceallocation.optimization.Solution;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import no.ntnu.ambulanceallocation.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/***
+ * Asynchronous steady-state variant of the genetic algorithm. Every worker repeatedly selects
+ * parents, breeds and evaluates two offspring and lets them replace the worst individuals, so
+ * there is no generation barrier where cores wait for the slowest simulation. A generation is
+ * counted for every population size of offspring, which drives the same crossover and mutation
+ * schedules as the generational GA.
+ ***/
+public class SteadyStateGeneticAlgorithm implements Optimizer {
+
+  private final Logger logger = LoggerFactory.getLogger(SteadyStateGeneticAlgorithm.class);
+
+  private final List<Double> time = new ArrayList<>();
+  private final List<Double> bestFitness = new ArrayList<>();
+  private final List<Double> averageFitness = new ArrayList<>();
+  private final List<Double> diversity = new ArrayList<>();
+  private final AtomicInteger offspringCount = new AtomicInteger();
+
+  private final Config config;
+  private SteadyStatePopulation population;
+  private long startTime;
+
+  public SteadyStateGeneticAlgorithm() {
+    this.config = Config.defaultConfig();
+  }
+
+  public SteadyStateGeneticAlgorithm(Config config) {
+    this.config = config;
+  }
+
+  @Override
+  public Solution getOptimalSolution() {
+    return population.snapshot().best();
+  }
+
+  @Override
+  public void optimize() {
+    clearRunStatistics();
+
+    Runnable optimizationWrapper =
+        () -> {
+          logger.info(
+              "Starting {} optimizer with {} workers...", getAbbreviation(), STEADY_STATE_WORKERS);
+          population =
+              new SteadyStatePopulation(
+                  new Population(POPULATION_SIZE, INITIALIZER, config), DISTINCT);
+          printAndSaveSummary(1);
+
+          var executor = Executors.newFixedThreadPool(STEADY_STATE_WORKERS);
+          for (var i = 0; i < STEADY_STATE_WORKERS; i++) {
+            executor.execute(this::breed);
+          }
+          executor.shutdown();
+          try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+          } catch (InterruptedException e) {
+            e.printStackTrace();
+          }
+          logger.info("{} finished successfully.", getAbbreviation());
+        };
+
+    var optimizationTime = Utils.timeIt(optimizationWrapper);
+    logger.info("Total {} optimization time: {} seconds", getAbbreviation(), optimizationTime);
+    logger.info("Fitness cache: {}", FitnessCache.getStatistics());
+  }
+
+  private void breed() {
+    while (elapsedTime() < MAX_RUNNING_TIME) {
+      var generation = getGeneration();
+      if (generation >= GENERATIONS_COMBINED) {
+        return;
+      }
+      var parents = population.selection(TOURNAMENT_SIZE);
+      var offspringA = new Individual(parents.first());
+      var offspringB = new Individual(parents.second());
+
+      offspringA.recombineWith(offspringB, getCrossoverProbability(generation));
+
+      offspringA.mutate(getMutationProbability(generation));
+      offspringB.mutate(getMutationProbability(generation));
+
+      insert(offspringA);
+      insert(offspringB);
+    }
+  }
+
+  private void insert(Individual offspring) {
+    if (DISTINCT && !offspring.hasChanged()) {
+      return;
+    }
+    offspring = config.CONSTRAINT_STRATEGY().apply(offspring);
+    // replaceWorst rejects offspring that do not beat the worst individual, and the worst
+    // fitness never increases, so offspring are only simulated until a rejection is certain
+    var cutoff = EARLY_ABORT ? population.getWorstFitness() : Double.POSITIVE_INFINITY;
+    offspring.evaluate(cutoff);
+    population.replaceWorst(offspring);
+
+    if (offspringCount.incrementAndGet() % POPULATION_SIZE == 0) {
+      printAndSaveSummary(getGeneration());
+    }
+  }
+
+  private int getGeneration() {
+    return offspringCount.get() / POPULATION_SIZE + 1;
+  }
+
+  private long elapsedTime() {
+    return TimeUnit.SECONDS.convert((System.nanoTime() - startTime), TimeUnit.NANOSECONDS);
+  }
+
+  private synchronized void printAndSaveSummary(int generation) {
+    var snapshot = population.snapshot();
+    var best = snapshot.best();
+    var bestFitness = best.getFitness();
+    var averageFitness = snapshot.getAverageFitness();
+    var elapsed = (System.nanoTime() - startTime) / 1e9;
+    logger.info("{} generation: {}", getAbbreviation(), generation);
+    if (config.USE_URGENCY_FITNESS()) {
+      logger.info("Best fitness: {}", 1.0 - bestFitness);
+      logger.info("Average fitness: {}", 1.0 - averageFitness);
+    } else {
+      logger.info("Best fitness: {}", bestFitness);
+      logger.info("Average fitness: {}", averageFitness);
+      logger.info("Best survival rate: {}", best.getSurvivalRate());
+    }
+    this.time.add(elapsed);
+    this.bestFitness.add(bestFitness);
+    this.averageFitness.add(averageFitness);
+    if (SAVE_DIVERSITY) {
+      var diversity = snapshot.getDiversity();
+      logger.info("Diversity: {}", diversity);
+      this.diversity.add(diversity);
+    }
+  }
+
+  private void clearRunStatistics() {
+    startTime = System.nanoTime();
+    offspringCount.set(0);
+    time.clear();
+    bestFitness.clear();
+    averageFitness.clear();
+    diversity.clear();
+  }
+
+  public Progress getProgress() {
+    return new Progress(time, bestFitness);
+  }
+
+  @Override
+  public Result getRunStatistics() {
+    var runStatistics = new Result();
+    runStatistics.saveColumn("best", bestFitness);
+    runStatistics.saveColumn("average", averageFitness);
+    runStatistics.saveColumn("diversity", diversity);
+    return runStatistics;
+  }
+
+  @Override
+  public String getAbbreviation() {
+    return "SSGA";
+  }
+}
@@ -0,0 +1,104 @@
+package no.ntnu.ambulanceallocation.optimization.ga;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+import no.ntnu.ambulanceallocation.optimization.Solution;
+import no.ntnu.ambulanceallocation.utils.Tuple;
+import no.ntnu.ambulanceallocation.utils.Utils;
+
+/***
+ * Fixed-size population shared by steady-state workers. Tournaments read the slots without
+ * locking, while an offspring replaces the worst individual under a short lock, so no worker
+ * waits for another worker's simulation. Members are always evaluated.
+ ***/
+public class SteadyStatePopulation {
+
+  private final AtomicReferenceArray<Individual> individuals;
+  private final List<Integer> indices;
+  // how many members have each allocation, only kept in distinct mode
+  private final Map<Solution, Integer> members = new HashMap<>();
+  private final boolean distinct;
+
+  public SteadyStatePopulation(Population population, boolean distinct) {
+    population.evaluate();
+    this.individuals = new AtomicReferenceArray<>(population.size());
+    this.indices = IntStream.range(0, population.size()).boxed().toList();
+    this.distinct = distinct;
+    for (var i = 0; i < population.size(); i++) {
+      individuals.set(i, population.get(i));
+      addMember(population.get(i));
+    }
+  }
+
+  public int size() {
+    return individuals.length();
+  }
+
+  public Tuple<Individual> selection(int tournamentSize) {
+    Individual best1 = null;
+    Individual best2 = null;
+    for (var index : Utils.randomChooseN(indices, tournamentSize)) {
+      var individual = individuals.get(index);
+      if (best1 == null || individual.getFitness() < best1.getFitness()) {
+        best2 = best1;
+        best1 = individual;
+      } else if (best2 == null || individual.getFitness() < best2.getFitness()) {
+        best2 = individual;
+      }
+    }
+    return new Tuple<>(best1, best2);
+  }
+
+  // may be slightly outdated, but the worst fitness only ever improves
+  public double getWorstFitness() {
+    var worst = Double.NEGATIVE_INFINITY;
+    for (var i = 0; i < size(); i++) {
+      worst = Math.max(worst, individuals.get(i).getFitness());
+    }
+    return worst;
+  }
+
+  // the evaluated offspring replaces the worst individual if it is better
+  public synchronized boolean replaceWorst(Individual offspring) {
+    if (offspring.isTruncated() || members.containsKey(offspring)) {
+      return false;
+    }
+    var worst = 0;
+    for (var i = 1; i < size(); i++) {
+      if (individuals.get(i).getFitness() > individuals.get(worst).getFitness()) {
+        worst = i;
+      }
+    }
+    if (offspring.getFitness() >= individuals.get(worst).getFitness()) {
+      return false;
+    }
+    removeMember(individuals.get(worst));
+    addMember(offspring);
+    individuals.set(worst, offspring);
+    return true;
+  }
+
+  private void addMember(Individual individual) {
+    if (distinct) {
+      members.merge(individual, 1, Integer::sum);
+    }
+  }
+
+  private void removeMember(Individual individual) {
+    if (distinct) {
+      members.computeIfPresent(individual, (member, count) -> count == 1 ? null : count - 1);
+    }
+  }
+
+  public Population snapshot() {
+    var snapshot = new ArrayList<Individual>(size());
+    for (var i = 0; i < size(); i++) {
+      snapshot.add(individuals.get(i));
+    }
+    return new Population(snapshot);
+  }
+}
@@ -1,7 +1,6 @@
 package no.ntnu.ambulanceallocation.optimization.initializer;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import no.ntnu.ambulanceallocation.simulation.BaseStation;
 import no.ntnu.ambulanceallocation.utils.Utils;
@@ -11,11 +10,13 @@ public class SatisfyConstraintRandom implements Initializer {
   @Override
   public List<Integer> initialize(int numberOfAmbulances) {
     var allocation = new ArrayList<Integer>();
+    var counts = new int[BaseStation.size()];
 
     while (allocation.size() < numberOfAmbulances) {
       var id = Utils.randomInt(BaseStation.size());
-      if (Collections.frequency(allocation, id) < BaseStation.get(id).getCapacity()) {
+      if (counts[id] < BaseStation.get(id).getCapacity()) {
         allocation.add(id);
+        counts[id]++;
       }
     }
 
@@ -1,9 +1,15 @@
 package no.ntnu.ambulanceallocation.optimization.sls;
 
+import static no.ntnu.ambulanceallocation.Parameters.EARLY_ABORT;
+import static no.ntnu.ambulanceallocation.Parameters.FIRST_IMPROVEMENT;
+import static no.ntnu.ambulanceallocation.Parameters.NEIGHBORHOOD_SAMPLE_SIZE;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
+import no.ntnu.ambulanceallocation.optimization.MultiFidelity;
 import no.ntnu.ambulanceallocation.optimization.Solution;
 import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
 import no.ntnu.ambulanceallocation.optimization.initializer.Random;
@@ -32,63 +38,155 @@ public class SlsSolution extends Solution {
     super(solution);
   }
 
-  private SlsSolution(SlsSolution root, int variableSet, int variable) {
+  private SlsSolution(SlsSolution root, Move move) {
     this(root);
 
-    var allocation = new ArrayList<>(getAllocation().allocation());
-    allocation.set(variableSet, forwardStep(getAllocation().get(variableSet), variable));
-    setAllocation(allocation);
+    setAllocation(move.variableSet(), move.variable(), move.variableValue());
   }
 
-  private SlsSolution(SlsSolution root, int variableSet, int variable, int variableValue) {
-    this(root);
-
-    setAllocation(variableSet, variable, variableValue);
-  }
+  // a neighbour is only described by the variable it changes until it is evaluated
+  private record Move(int variableSet, int variable, int variableValue) {}
 
   public void noiseStep() {
     var randomVariableSet = Utils.randomInt(getAllocation().size());
     var randomVariable = Utils.randomIndexOf(getAllocation().get(randomVariableSet));
-    var randomNeighbor = new SlsSolution(this, randomVariableSet, randomVariable);
+    var randomNeighbor = new SlsSolution(this, forwardMove(randomVariableSet, randomVariable));
 
     copy(randomNeighbor);
   }
 
   public SlsSolution greedyStep(NeighborhoodFunction neighborhoodFunction) {
-    var neighborhood =
+    return greedyStep(neighborhoodFunction, NEIGHBORHOOD_SAMPLE_SIZE, FIRST_IMPROVEMENT);
+  }
+
+  SlsSolution greedyStep(
+      NeighborhoodFunction neighborhoodFunction, int sampleSize, boolean firstImprovement) {
+    var moves =
         switch (neighborhoodFunction) {
-          case FORWARD -> getForwardNeighborhood();
-          case HAMMING -> getHammingNeighborhood();
+          case FORWARD -> getForwardMoves();
+          case HAMMING -> getHammingMoves();
         };
+    if (firstImprovement || sampleSize > 0) {
+      Collections.shuffle(moves, Utils.random());
+    }
+    if (sampleSize > 0 && sampleSize < moves.size()) {
+      moves = moves.subList(0, sampleSize);
+    }
+
+    if (firstImprovement) {
+      firstImprovement(moves);
+    } else {
+      bestImprovement(moves);
+    }
+    return this;
+  }
+
+  /***
+   * Evaluates the moves in random order, in parallel, and takes the first neighbour that improves
+   * on the current solution. Simulations of the other neighbours still running are cancelled once
+   * it is found, which is why they run in this process even when the fitness farm is enabled. If
+   * no move improves, the solution is a local optimum of the sampled neighbourhood and stays,
+   * leaving the escape to the noise and restart steps.
+   ***/
+  private void firstImprovement(List<Move> moves) {
+    var fitness = getFitness();
+    var cutoff = EARLY_ABORT ? fitness : Double.POSITIVE_INFINITY;
+    var improvement = new AtomicReference<SlsSolution>();
+
+    moves.parallelStream()
+        .forEach(
+            move -> {
+              if (improvement.get() != null) {
+                return;
+              }
+              var neighbor = new SlsSolution(this, move);
+              neighbor.evaluate(cutoff, () -> improvement.get() != null);
+              if (improves(neighbor, fitness)) {
+                improvement.compareAndSet(null, neighbor);
+              }
+            });
+
+    if (improvement.get() != null) {
+      copy(improvement.get());
+    }
+  }
 
-    neighborhood.parallelStream().forEach(Solution::getFitness);
+  // a truncated neighbour only has a bound on its fitness, so it never counts as an improvement
+  static boolean improves(Solution neighbor, double fitness) {
+    return !neighbor.isTruncated() && neighbor.getFitness() < fitness;
+  }
+
+  private void bestImprovement(List<Move> moves) {
+    var neighborhood = new ArrayList<SlsSolution>(moves.size());
+    for (var move : moves) {
+      neighborhood.add(new SlsSolution(this, move));
+    }
+
+    // neighbours that cannot beat the current solution are only simulated until that is certain
+    var cutoff = EARLY_ABORT ? getFitness() : Double.POSITIVE_INFINITY;
+    if (MultiFidelity.isEnabled()) {
+      MultiFidelity.evaluate(
+          getConfig(),
+          neighborhood,
+          cutoff,
+          finalists -> finalists.parallelStream().forEach(neighbor -> neighbor.evaluate(cutoff)));
+    } else {
+      neighborhood.parallelStream().forEach(neighbor -> neighbor.evaluate(cutoff));
+    }
     Collections.sort(neighborhood);
 
     var bestNeighbor = neighborhood.get(0);
+    if (bestNeighbor.isTruncated()) {
+      bestNeighbor = bestTruncatedNeighbor(neighborhood);
+    }
     copy(bestNeighbor);
+  }
 
-    return this;
+  // all neighbours are worse than the current solution, so find the least bad one. In order of
+  // their bounds, they are simulated again in parallel batches against the best fitness found so
+  // far, until no bound is below it
+  private SlsSolution bestTruncatedNeighbor(List<SlsSolution> neighborhood) {
+    var batchSize = Runtime.getRuntime().availableProcessors();
+    SlsSolution bestNeighbor = null;
+    for (var start = 0; start < neighborhood.size(); start += batchSize) {
+      var cutoff = bestNeighbor == null ? Double.POSITIVE_INFINITY : bestNeighbor.getFitness();
+      var batch =
+          neighborhood.subList(start, Math.min(start + batchSize, neighborhood.size())).stream()
+              .filter(neighbor -> neighbor.getFitness() < cutoff)
+              .toList();
+      if (batch.isEmpty()) {
+        break;
+      }
+      batch.parallelStream().forEach(neighbor -> neighbor.evaluate(cutoff));
+      for (var neighbor : batch) {
+        if (!neighbor.isTruncated()
+            && (bestNeighbor == null || neighbor.getFitness() < bestNeighbor.getFitness())) {
+          bestNeighbor = neighbor;
+        }
+      }
+    }
+    return bestNeighbor;
   }
 
   public void restartStep() {
     copy(new SlsSolution());
   }
 
-  private List<SlsSolution> getForwardNeighborhood() {
-    var neighborhood = new ArrayList<SlsSolution>();
+  private List<Move> getForwardMoves() {
+    var moves = new ArrayList<Move>();
 
     for (var variableSet = 0; variableSet < getAllocation().size(); variableSet++) {
 
       var size = getAllocation().get(variableSet).size();
       for (var rootVariable = 0; rootVariable < size; rootVariable++) {
-        neighborhood.add(new SlsSolution(this, variableSet, rootVariable));
+        moves.add(forwardMove(variableSet, rootVariable));
       }
     }
-    return neighborhood;
+    return moves;
   }
 
-  private List<SlsSolution> getHammingNeighborhood() {
-    var neighborhood = new ArrayList<SlsSolution>();
+  private List<Move> getHammingMoves() {
+    var moves = new ArrayList<Move>();
 
     for (var variableSet = 0; variableSet < getAllocation().size(); variableSet++) {
       for (var variable = 0; variable < getAllocation().get(variableSet).size(); variable++) {
@@ -96,21 +194,16 @@ public class SlsSolution extends Solution {
 
           var currentValue = getAllocation().get(variableSet).get(variable);
           if (variableValue != currentValue) {
-            neighborhood.add(new SlsSolution(this, variableSet, variable, variableValue));
+            moves.add(new Move(variableSet, variable, variableValue));
           }
         }
       }
     }
-    return neighborhood;
+    return moves;
   }
 
-  private List<Integer> forwardStep(List<Integer> variableSet, int variable) {
-    var newVariableSet = new ArrayList<>(variableSet);
-    var value = newVariableSet.get(variable);
-
-    value = (value + 1) % MAX_VALUE;
-    newVariableSet.set(variable, value);
-
-    return newVariableSet;
+  private Move forwardMove(int variableSet, int variable) {
+    var value = getAllocation().get(variableSet).get(variable);
+    return new Move(variableSet, variable, (value + 1) % MAX_VALUE);
   }
 }
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 
 import no.ntnu.ambulanceallocation.Parameters;
 import no.ntnu.ambulanceallocation.experiments.Result;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache;
 import no.ntnu.ambulanceallocation.optimization.Optimizer;
 import no.ntnu.ambulanceallocation.optimization.Solution;
 import no.ntnu.ambulanceallocation.simulation.Config;
@@ -103,6 +104,7 @@ public class StochasticLocalSearch implements Optimizer {
 
     var optimizationTime = Utils.timeIt(optimizationWrapper);
     logger.info("Total {} optimization time: {} s", getAbbreviation(), optimizationTime);
+    logger.info("Fitness cache: {}", FitnessCache.getStatistics());
   }
 
   @Override
@@ -2,6 +2,8 @@ package no.ntnu.ambulanceallocation.simulation;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import no.ntnu.ambulanceallocation.simulation.event.Event;
 import no.ntnu.ambulanceallocation.simulation.event.NewCall;
 import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
 import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
@@ -11,9 +13,10 @@ import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
 
 public class Ambulance {
 
-  private static Config config;
-
+  private final Config config;
   private final BaseStation baseStation;
+  // latest event of every call, kept by the simulation that owns this ambulance
+  private final Map<NewCall, Event> callEvents;
   private boolean isOffDuty = true;
   private Coordinate hospitalLocation = null;
   private Incident incident;
@@ -33,15 +36,49 @@ public class Ambulance {
   private int dispatchDelay;
   private int timeToIncident;
   private int coveragePenalty = 0;
+  private FleetState fleetState;
+  private int fleetIndex;
 
-  public Ambulance(BaseStation baseStation, int id) {
+  Ambulance(BaseStation baseStation, int id, Config config, Map<NewCall, Event> callEvents) {
     this.id = id;
     this.baseStation = baseStation;
+    this.config = config;
+    this.callEvents = callEvents;
     this.currentLocation = baseStation.getCoordinate();
   }
 
-  public static void setConfig(Config currentConfig) {
-    config = currentConfig;
+  void register(FleetState fleetState, int fleetIndex) {
+    this.fleetState = fleetState;
+    this.fleetIndex = fleetIndex;
+  }
+
+  int getFleetIndex() {
+    return fleetIndex;
+  }
+
+  void copyState(Ambulance other, StateCopy copy) {
+    if (other.baseStation != baseStation) {
+      throw new IllegalStateException("Cannot copy the state of an ambulance at another station");
+    }
+    isOffDuty = other.isOffDuty;
+    hospitalLocation = other.hospitalLocation;
+    incident = other.incident;
+    reassigned = other.reassigned;
+    originatingLocation = other.originatingLocation;
+    route = other.route;
+    destination = other.destination;
+    currentLocation = other.currentLocation;
+    call = copy.newCall(other.call);
+    nextCall =
+        other.nextCall == null
+            ? null
+            : new NextCall(copy.newCall(other.nextCall.newCall), other.nextCall.hospitalLocation);
+    currentRouteIndex = other.currentRouteIndex;
+    transportingPatient = other.transportingPatient;
+    dispatchDelay = other.dispatchDelay;
+    timeToIncident = other.timeToIncident;
+    coveragePenalty = other.coveragePenalty;
+    stateChanged();
   }
 
   public BaseStation getBaseStation() {
@@ -104,10 +141,12 @@ public class Ambulance {
 
   public void startNewShift() {
     isOffDuty = false;
+    stateChanged();
   }
 
   public void finishShift() {
     isOffDuty = true;
+    stateChanged();
   }
 
   public void setCall(NewCall newCall) {
@@ -116,6 +155,7 @@ public class Ambulance {
 
   public void removeNextCall() {
     nextCall = null;
+    stateChanged();
   }
 
   public void updateDispatchDelay(Incident incident) {
@@ -131,7 +171,7 @@ public class Ambulance {
   }
 
   public void updateTransportingAmbulance(Incident nextIncident) {
-    var availableTime = call.getNextEvent().getTime();
+    var availableTime = callEvents.get(call).getTime();
     var remainingTimeToAvailable =
         (int) ChronoUnit.SECONDS.between(nextIncident.callReceived(), availableTime);
 
@@ -166,9 +206,11 @@ public class Ambulance {
   }
 
   public boolean willArriveAfter(LocalDateTime updateTime) {
-    return call == null
-        || call.getNextEvent() == null
-        || !call.getNextEvent().getTime().isBefore(updateTime);
+    if (call == null) {
+      return true;
+    }
+    var callEvent = callEvents.get(call);
+    return callEvent == null || !callEvent.getTime().isBefore(updateTime);
   }
 
   public boolean isAvailable() {
@@ -188,13 +230,18 @@ public class Ambulance {
   }
 
   public boolean canBeReassigned(Incident newIncident) {
-    return !isOffDuty
-        && incident != null
-        && incident.urgencyLevel() != UrgencyLevel.ACUTE
+    return mayBeReassigned()
         // only reassign if new incident is more urgent
         && incident.urgencyLevel() != newIncident.urgencyLevel()
         // not at scene
-        && !currentLocation.equals(incident.getLocation())
+        && !currentLocation.equals(incident.getLocation());
+  }
+
+  // the part of canBeReassigned that only depends on the state of this ambulance
+  boolean mayBeReassigned() {
+    return !isOffDuty
+        && incident != null
+        && incident.urgencyLevel() != UrgencyLevel.ACUTE
         // not transporting a patient
         && !transportingPatient
         // only one dispatched ambulance
@@ -220,11 +267,13 @@ public class Ambulance {
     currentRouteIndex = 0;
     reassigned = false;
     transportingPatient = false;
+    stateChanged();
   }
 
   public void dispatch(NewCall newCall, Coordinate hospital) {
     if (canBeQueued()) {
       nextCall = new NextCall(newCall, hospital);
+      stateChanged();
       return;
     }
     incident = newCall.incident;
@@ -233,6 +282,7 @@ public class Ambulance {
     hospitalLocation = hospital;
     route = DistanceIO.getRoute(currentLocation, destination);
     currentRouteIndex = 0;
+    stateChanged();
   }
 
   public boolean dispatchNextCall() {
@@ -242,11 +292,13 @@ public class Ambulance {
     dispatch(nextCall.newCall, nextCall.hospitalLocation);
     call = nextCall.newCall;
     nextCall = null;
+    stateChanged();
     return true;
   }
 
   public void arriveAtScene() {
     currentLocation = incident.getLocation();
+    stateChanged();
   }
 
   public void transport() {
@@ -255,6 +307,7 @@ public class Ambulance {
     destination = new Coordinate(hospitalLocation);
     route = DistanceIO.getRoute(currentLocation, destination);
     currentRouteIndex = 0;
+    stateChanged();
   }
 
   public void arriveAtHospital() {
@@ -262,6 +315,7 @@ public class Ambulance {
       throw new IllegalStateException("Cannot arrive at hospital when it is null");
     }
     currentLocation = new Coordinate(hospitalLocation);
+    stateChanged();
   }
 
   public void updateLocation(int timePeriod) {
@@ -275,6 +329,7 @@ public class Ambulance {
     } else {
       currentLocation = getNewLocation(timePeriod);
     }
+    stateChanged();
   }
 
   private Coordinate getNewLocation() {
@@ -312,6 +367,12 @@ public class Ambulance {
     return new Coordinate(Long.parseLong(nextLocationId));
   }
 
+  private void stateChanged() {
+    if (fleetState != null) {
+      fleetState.update(this);
+    }
+  }
+
   @Override
   public String toString() {
     return String.format(
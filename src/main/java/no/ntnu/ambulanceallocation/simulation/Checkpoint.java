@@ -0,0 +1,23 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+/***
+ * Frozen copy of a simulation taken just before it first entered a shift type. Simulations of
+ * allocations that only differ in shift types not yet entered can resume from it. The allocation
+ * of a shift type holds for every shift of that type, so once the simulation has entered both
+ * types no later state is valid for a different allocation. Only one checkpoint is taken, before
+ * the first shift of the type not simulated from the start, and only neighbours that change that
+ * type's allocation resume from it. With a period starting at midnight these are the day shift
+ * moves, which skip the first eight hours of the period.
+ ***/
+public final class Checkpoint {
+
+  private final Simulation state;
+
+  Checkpoint(Simulation state) {
+    this.state = state;
+  }
+
+  Simulation state() {
+    return state;
+  }
+}
@@ -17,6 +17,7 @@ public record Config(
     int BUFFER_SIZE,
     int UPDATE_LOCATION_PERIOD,
     boolean USE_URGENCY_FITNESS,
+    double RESPONSE_TIME_PERCENTILE,
     boolean ENABLE_REDISPATCH,
     boolean ENABLE_QUEUE_NEXT,
     DispatchDelay DISPATCH_DELAY,
@@ -35,6 +36,7 @@ public record Config(
         Parameters.BUFFER_SIZE,
         Parameters.UPDATE_LOCATION_PERIOD,
         Parameters.USE_URGENCY_FITNESS,
+        Parameters.RESPONSE_TIME_PERCENTILE,
         Parameters.ENABLE_REDISPATCH,
         Parameters.ENABLE_QUEUE_NEXT,
         Parameters.DISPATCH_DELAY,
@@ -54,6 +56,7 @@ public record Config(
         Parameters.BUFFER_SIZE,
         Parameters.UPDATE_LOCATION_PERIOD,
         Parameters.USE_URGENCY_FITNESS,
+        Parameters.RESPONSE_TIME_PERCENTILE,
         Parameters.ENABLE_REDISPATCH,
         Parameters.ENABLE_QUEUE_NEXT,
         Parameters.DISPATCH_DELAY,
@@ -73,6 +76,7 @@ public record Config(
         Parameters.BUFFER_SIZE,
         Parameters.UPDATE_LOCATION_PERIOD,
         Parameters.USE_URGENCY_FITNESS,
+        Parameters.RESPONSE_TIME_PERCENTILE,
         Parameters.ENABLE_REDISPATCH,
         Parameters.ENABLE_QUEUE_NEXT,
         Parameters.DISPATCH_DELAY,
@@ -81,4 +85,24 @@ public record Config(
         Parameters.INCIDENT_DISTRIBUTION,
         Parameters.CONSTRAINT_STRATEGY);
   }
+
+  public Config withPeriod(LocalDateTime start, LocalDateTime end, int bufferSize) {
+    return new Config(
+        start,
+        end,
+        NUMBER_OF_AMBULANCES_DAY,
+        NUMBER_OF_AMBULANCES_NIGHT,
+        DISPATCH_POLICY,
+        bufferSize,
+        UPDATE_LOCATION_PERIOD,
+        USE_URGENCY_FITNESS,
+        RESPONSE_TIME_PERCENTILE,
+        ENABLE_REDISPATCH,
+        ENABLE_QUEUE_NEXT,
+        DISPATCH_DELAY,
+        HANDLING_DELAY,
+        HISTORIC_HOSPITAL_TIME,
+        INCIDENT_DISTRIBUTION,
+        CONSTRAINT_STRATEGY);
+  }
 }
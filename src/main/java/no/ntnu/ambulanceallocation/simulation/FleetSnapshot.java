@@ -0,0 +1,59 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import no.ntnu.ambulanceallocation.simulation.event.NewCall;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+
+/***
+ * Immutable copy of the fleet and the call queue at one point in simulated time, safe to read
+ * from another thread while the simulation keeps running.
+ ***/
+public record FleetSnapshot(
+    LocalDateTime time, List<AmbulanceSnapshot> ambulances, List<Incident> queuedIncidents) {
+
+  public static FleetSnapshot of(
+      LocalDateTime time, Collection<Ambulance> ambulances, Collection<NewCall> callQueue) {
+    return new FleetSnapshot(
+        time,
+        ambulances.stream().map(AmbulanceSnapshot::of).toList(),
+        callQueue.stream().map(call -> call.incident).toList());
+  }
+
+  public long activeAmbulances() {
+    return ambulances.stream().filter(ambulance -> !ambulance.offDuty()).count();
+  }
+
+  public record AmbulanceSnapshot(
+      int id,
+      BaseStation baseStation,
+      Coordinate currentLocation,
+      Coordinate destination,
+      Incident incident,
+      boolean offDuty,
+      boolean atBaseStation,
+      boolean available,
+      boolean transportingPatient,
+      boolean reassigned) {
+
+    static AmbulanceSnapshot of(Ambulance ambulance) {
+      return new AmbulanceSnapshot(
+          ambulance.id,
+          ambulance.getBaseStation(),
+          ambulance.getCurrentLocation(),
+          ambulance.getDestination(),
+          ambulance.getIncident(),
+          ambulance.isOffDuty(),
+          ambulance.isAtBaseStation(),
+          ambulance.isAvailable(),
+          ambulance.isTransportingPatient(),
+          ambulance.isReassigned());
+    }
+
+    public boolean isReturningToBaseStation() {
+      return available && baseStation.getCoordinate().equals(destination);
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchPolicy;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.Isochrones;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentDistribution;
+import no.ntnu.ambulanceallocation.simulation.incident.NeighbourhoodDemand;
+
+/***
+ * Index over the state of every ambulance in one simulation. Ambulances report their state
+ * transitions here, so candidates can be enumerated without scanning the whole fleet.
+ ***/
+public final class FleetState {
+
+  private final Ambulance[] ambulances;
+  private final BitSet available;
+  private final BitSet reassignable;
+  private final BitSet queueable;
+  private final int[] availableAtBaseStation = new int[BaseStation.size()];
+  private int availableCount = 0;
+
+  // available ambulances counted per cell by the isochrones, only kept when asked for
+  private static final int NOT_COUNTED = -2;
+  private final boolean trackCoverage;
+  private final int[] coveredCell;
+  private final int[] availableReaching;
+  private final int[] availableReachable;
+  private int availableWithoutRoutes = 0;
+
+  // available ambulances counted per grid neighbourhood, only kept when asked for
+  private static final long NO_CELL = -1;
+  private final boolean trackNeighbourhoods;
+  private final long[] neighbourhoodCell;
+  private final int[] availableInNeighbourhood;
+
+  public FleetState(List<Ambulance> fleet) {
+    this(fleet, false, false);
+  }
+
+  // tracks the counts the dispatch policy of the config reads
+  public FleetState(List<Ambulance> fleet, Config config) {
+    this(
+        fleet,
+        config.DISPATCH_POLICY() == DispatchPolicy.CoverageNearby,
+        config.DISPATCH_POLICY() == DispatchPolicy.CoveragePredictedDemand
+            && config.INCIDENT_DISTRIBUTION() == IncidentDistribution.GRID);
+  }
+
+  private FleetState(List<Ambulance> fleet, boolean trackCoverage, boolean trackNeighbourhoods) {
+    ambulances = fleet.toArray(Ambulance[]::new);
+    available = new BitSet(ambulances.length);
+    reassignable = new BitSet(ambulances.length);
+    queueable = new BitSet(ambulances.length);
+    this.trackCoverage = trackCoverage;
+    coveredCell = new int[trackCoverage ? ambulances.length : 0];
+    availableReaching = new int[trackCoverage ? Isochrones.size() : 0];
+    availableReachable = new int[trackCoverage ? Isochrones.size() : 0];
+    Arrays.fill(coveredCell, NOT_COUNTED);
+    this.trackNeighbourhoods = trackNeighbourhoods;
+    neighbourhoodCell = new long[trackNeighbourhoods ? ambulances.length : 0];
+    availableInNeighbourhood = new int[trackNeighbourhoods ? NeighbourhoodDemand.size() : 0];
+    Arrays.fill(neighbourhoodCell, NO_CELL);
+
+    for (var i = 0; i < ambulances.length; i++) {
+      ambulances[i].register(this, i);
+      update(ambulances[i]);
+    }
+  }
+
+  public int size() {
+    return ambulances.length;
+  }
+
+  public Ambulance get(int index) {
+    return ambulances[index];
+  }
+
+  public int availableCount() {
+    return availableCount;
+  }
+
+  public int availableAt(BaseStation baseStation) {
+    return availableAtBaseStation[baseStation.getId()];
+  }
+
+  // available ambulances that can reach the location within the coverage time
+  public int availableReaching(Coordinate location) {
+    var cell = coverageCell(location);
+    return cell < 0 ? availableCount : availableReaching[cell] + availableWithoutRoutes;
+  }
+
+  // available ambulances the location can reach within the coverage time
+  public int availableReachableFrom(Coordinate location) {
+    var cell = coverageCell(location);
+    return cell < 0 ? availableCount : availableReachable[cell] + availableWithoutRoutes;
+  }
+
+  private int coverageCell(Coordinate location) {
+    if (!trackCoverage) {
+      throw new IllegalStateException("Coverage is not tracked for this fleet");
+    }
+    return Isochrones.cell(location);
+  }
+
+  // available ambulances in a grid cell that is a neighbour of the neighbourhood
+  public int availableInNeighbourhood(int neighbourhood) {
+    if (!trackNeighbourhoods) {
+      throw new IllegalStateException("Neighbourhoods are not tracked for this fleet");
+    }
+    return neighbourhood < 0 ? 0 : availableInNeighbourhood[neighbourhood];
+  }
+
+  public boolean isQueueable(Ambulance ambulance) {
+    return queueable.get(ambulance.getFleetIndex());
+  }
+
+  // the add methods append ambulances in fleet order without allocating
+  public void addAvailable(List<Ambulance> candidates) {
+    add(available, candidates);
+  }
+
+  public void addReassignable(Incident incident, List<Ambulance> candidates) {
+    for (var i = reassignable.nextSetBit(0); i >= 0; i = reassignable.nextSetBit(i + 1)) {
+      if (ambulances[i].canBeReassigned(incident)) {
+        candidates.add(ambulances[i]);
+      }
+    }
+  }
+
+  public void addQueueable(List<Ambulance> candidates) {
+    add(queueable, candidates);
+  }
+
+  void update(Ambulance ambulance) {
+    var index = ambulance.getFleetIndex();
+    var wasAvailable = available.get(index);
+    var isAvailable = ambulance.isAvailable();
+
+    if (wasAvailable != isAvailable) {
+      var change = isAvailable ? 1 : -1;
+      availableCount += change;
+      availableAtBaseStation[ambulance.getBaseStation().getId()] += change;
+      available.set(index, isAvailable);
+    }
+    reassignable.set(index, ambulance.mayBeReassigned());
+    queueable.set(index, ambulance.canBeQueued());
+
+    if (trackCoverage) {
+      var cell = isAvailable ? Isochrones.cell(ambulance.getCurrentLocation()) : NOT_COUNTED;
+      if (cell != coveredCell[index]) {
+        cover(coveredCell[index], -1);
+        cover(cell, 1);
+        coveredCell[index] = cell;
+      }
+    }
+
+    if (trackNeighbourhoods) {
+      var cell = isAvailable ? ambulance.getCurrentLocation().id() : NO_CELL;
+      if (cell != neighbourhoodCell[index]) {
+        countInNeighbourhoods(neighbourhoodCell[index], -1);
+        countInNeighbourhoods(cell, 1);
+        neighbourhoodCell[index] = cell;
+      }
+    }
+  }
+
+  private void countInNeighbourhoods(long cell, int change) {
+    if (cell == NO_CELL) {
+      return;
+    }
+    for (var neighbourhood : NeighbourhoodDemand.containing(new Coordinate(cell))) {
+      availableInNeighbourhood[neighbourhood] += change;
+    }
+  }
+
+  private void cover(int cell, int change) {
+    if (cell == NOT_COUNTED) {
+      return;
+    }
+    if (cell < 0) {
+      availableWithoutRoutes += change;
+      return;
+    }
+    for (var reached : Isochrones.reachableFrom(cell)) {
+      availableReaching[reached] += change;
+    }
+    for (var reaching : Isochrones.reachingTo(cell)) {
+      availableReachable[reaching] += change;
+    }
+  }
+
+  private void add(BitSet bits, List<Ambulance> candidates) {
+    for (var i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+      candidates.add(ambulances[i]);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import no.ntnu.ambulanceallocation.simulation.event.NewCall;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.incident.IncidentIO;
+import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
+
+/***
+ * The incidents of one simulation period decoded once and shared read-only between all
+ * simulations that use the same config.
+ ***/
+final class IncidentStream {
+
+  private static final Map<Config, IncidentStream> memoizedIncidentStreams =
+      new ConcurrentHashMap<>();
+
+  private final Incident[] incidents;
+  private final NewCall[] newCalls;
+  private final boolean[] providesResponseTime;
+  private final int[] responseTimeIncidents = new int[UrgencyLevel.values().length];
+  private final Map<Incident, Coordinate> nearestHospitals;
+  private final Map<Incident, Integer> ids;
+
+  private IncidentStream(Config config) {
+    var bufferStartDateTime = config.START_DATE_TIME().minusHours(config.BUFFER_SIZE());
+    incidents =
+        IncidentIO.incidents.stream()
+            .filter(incident -> incident.callReceived().isAfter(bufferStartDateTime))
+            .filter(incident -> incident.callReceived().isBefore(config.END_DATE_TIME()))
+            .sorted(Comparator.comparing(Incident::callReceived))
+            .toArray(Incident[]::new);
+
+    providesResponseTime = new boolean[incidents.length];
+    newCalls = new NewCall[incidents.length];
+    nearestHospitals = new IdentityHashMap<>();
+    ids = new IdentityHashMap<>();
+    for (var i = 0; i < incidents.length; i++) {
+      var incident = incidents[i];
+      // the period is half-open, so a call on the boundary between two periods is counted once
+      providesResponseTime[i] =
+          !incident.callReceived().isBefore(config.START_DATE_TIME())
+              && !incident.urgencyLevel().isRegular();
+      if (providesResponseTime[i]) {
+        responseTimeIncidents[incident.urgencyLevel().ordinal()]++;
+      }
+      newCalls[i] = new NewCall(incident, providesResponseTime[i]);
+      nearestHospitals.put(incident, findNearestHospital(incident));
+      ids.put(incident, i);
+    }
+  }
+
+  private IncidentStream(IncidentStream stream, int[] indices) {
+    incidents = new Incident[indices.length];
+    newCalls = new NewCall[indices.length];
+    providesResponseTime = new boolean[indices.length];
+    nearestHospitals = stream.nearestHospitals;
+    ids = stream.ids;
+    for (var i = 0; i < indices.length; i++) {
+      incidents[i] = stream.incidents[indices[i]];
+      newCalls[i] = stream.newCalls[indices[i]];
+      providesResponseTime[i] = stream.providesResponseTime[indices[i]];
+      if (providesResponseTime[i]) {
+        responseTimeIncidents[incidents[i].urgencyLevel().ordinal()]++;
+      }
+    }
+  }
+
+  static IncidentStream of(Config config) {
+    return memoizedIncidentStreams.computeIfAbsent(config, IncidentStream::new);
+  }
+
+  IncidentStream filter(Predicate<Incident> predicate) {
+    var indices =
+        IntStream.range(0, incidents.length).filter(i -> predicate.test(incidents[i])).toArray();
+    return new IncidentStream(this, indices);
+  }
+
+  int size() {
+    return incidents.length;
+  }
+
+  int responseTimeIncidents(UrgencyLevel urgencyLevel) {
+    return responseTimeIncidents[urgencyLevel.ordinal()];
+  }
+
+  Incident incident(int index) {
+    return incidents[index];
+  }
+
+  LocalDateTime callReceived(int index) {
+    return incidents[index].callReceived();
+  }
+
+  // the same call object for every simulation reading the stream
+  NewCall newCall(int index) {
+    return newCalls[index];
+  }
+
+  // position of the incident in the unfiltered stream, or -1 for incidents from elsewhere
+  int id(Incident incident) {
+    var id = ids.get(incident);
+    return id != null ? id : -1;
+  }
+
+  Coordinate nearestHospital(Incident incident) {
+    var hospital = nearestHospitals.get(incident);
+    return hospital != null ? hospital : findNearestHospital(incident);
+  }
+
+  private static Coordinate findNearestHospital(Incident incident) {
+    return Arrays.stream(Hospital.values())
+        .min(Hospital.closestTo(incident))
+        .map(Hospital::getCoordinate)
+        .orElseThrow();
+  }
+}
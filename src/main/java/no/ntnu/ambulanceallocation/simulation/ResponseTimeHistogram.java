@@ -0,0 +1,104 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+/***
+ * Log-linear histogram of response times in seconds. Times below 64 seconds get a bucket each,
+ * and every doubling above that is split into 32 buckets, so percentiles are exact to within
+ * about 3%. The memory used is fixed, and histograms of different runs can be merged. Percentiles
+ * asked for at a growing rank, as while a simulation runs, continue from the previous answer
+ * instead of scanning from the first bucket.
+ ***/
+public final class ResponseTimeHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+  private static final int BUCKETS = bucketIndex(Integer.MAX_VALUE) + 1;
+
+  private final int[] counts = new int[BUCKETS];
+  private int totalCount = 0;
+  private int maxValue = 0;
+
+  // bucket of the last percentile, and the number of response times in the buckets below it
+  private int cursor = 0;
+  private int countBelowCursor = 0;
+
+  public ResponseTimeHistogram() {}
+
+  ResponseTimeHistogram(ResponseTimeHistogram other) {
+    add(other);
+  }
+
+  public void record(int responseTime) {
+    if (responseTime < 0) {
+      throw new IllegalStateException("Response time should never be negative");
+    }
+    var index = bucketIndex(responseTime);
+    counts[index]++;
+    if (index < cursor) {
+      countBelowCursor++;
+    }
+    totalCount++;
+    maxValue = Math.max(maxValue, responseTime);
+  }
+
+  public void add(ResponseTimeHistogram other) {
+    for (var i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    maxValue = Math.max(maxValue, other.maxValue);
+    cursor = 0;
+    countBelowCursor = 0;
+  }
+
+  public int getTotalCount() {
+    return totalCount;
+  }
+
+  public int getMaxValue() {
+    return maxValue;
+  }
+
+  // highest response time in the bucket holding the given percentile (0-100]
+  public int percentile(double percentile) {
+    return percentile(percentile, 0);
+  }
+
+  // percentile of the recorded response times together with a number of zero response times
+  int percentile(double percentile, int zeros) {
+    var total = totalCount + zeros;
+    if (total == 0) {
+      throw new IllegalStateException("Cannot take a percentile of an empty histogram");
+    }
+    var rank = Math.max(1, (int) Math.ceil(percentile / 100.0 * total)) - zeros;
+    if (rank <= 0) {
+      return 0;
+    }
+
+    if (rank <= countBelowCursor) {
+      cursor = 0;
+      countBelowCursor = 0;
+    }
+    while (cursor < BUCKETS && countBelowCursor + counts[cursor] < rank) {
+      countBelowCursor += counts[cursor++];
+    }
+    return cursor < BUCKETS ? Math.min(highestValueInBucket(cursor), maxValue) : maxValue;
+  }
+
+  private static int bucketIndex(int value) {
+    var highestBit = 31 - Integer.numberOfLeadingZeros(value);
+    if (highestBit < SUB_BUCKET_BITS) {
+      return value;
+    }
+    var shift = highestBit - SUB_BUCKET_BITS + 1;
+    return shift * HALF_SUB_BUCKETS + (value >> shift);
+  }
+
+  private static int highestValueInBucket(int index) {
+    if (index < 2 * HALF_SUB_BUCKETS) {
+      return index;
+    }
+    var shift = (index >> (SUB_BUCKET_BITS - 1)) - 1;
+    var lowest = (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+    return (int) Math.min(Integer.MAX_VALUE, lowest + (1L << shift) - 1);
+  }
+}
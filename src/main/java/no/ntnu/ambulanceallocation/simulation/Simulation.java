@@ -2,21 +2,25 @@ package no.ntnu.ambulanceallocation.simulation;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.nio.file.Path;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.IntStream;
-import javafx.beans.property.DoubleProperty;
 import no.ntnu.ambulanceallocation.optimization.Allocation;
 import no.ntnu.ambulanceallocation.simulation.event.AbortIncident;
 import no.ntnu.ambulanceallocation.simulation.event.Event;
@@ -26,22 +30,18 @@ import no.ntnu.ambulanceallocation.simulation.event.NewCall;
 import no.ntnu.ambulanceallocation.simulation.event.PartiallyRespondedCall;
 import no.ntnu.ambulanceallocation.simulation.event.SceneArrival;
 import no.ntnu.ambulanceallocation.simulation.event.SceneDeparture;
-import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
-import no.ntnu.ambulanceallocation.simulation.incident.IncidentIO;
-import no.ntnu.ambulanceallocation.utils.SimulatedIncidentResult;
-import no.ntnu.ambulanceallocation.utils.TriConsumer;
-import no.ntnu.ambulanceallocation.utils.Utils;
+import no.ntnu.ambulanceallocation.simulation.trace.TraceType;
+import no.ntnu.ambulanceallocation.simulation.trace.TraceWriter;
 
 public final class Simulation {
 
-  private static final Map<Config, List<Incident>> memoizedIncidentList = new HashMap<>();
-  private static int factor = 0;
-
-  private final DoubleProperty simulationUpdateInterval;
-  private final TriConsumer<LocalDateTime, Collection<Ambulance>, Collection<NewCall>> onTimeUpdate;
+  private final SnapshotBuffer snapshots;
   private final Config config;
+  private final int factor;
   private final boolean visualizationMode;
+  private final Set<BaseStation> baseStations;
+  private final Predicate<Incident> incidentFilter;
   private final List<Ambulance> ambulances = new ArrayList<>();
   private final Queue<NewCall> callQueue = new LinkedList<>();
   private final PriorityQueue<Event> eventQueue = new PriorityQueue<>();
@@ -50,27 +50,57 @@ public final class Simulation {
   private final Map<BaseStation, List<Ambulance>> baseStationAmbulances = new HashMap<>();
   private final Map<BaseStation, Integer> remainingOffDutyAmbulances = new HashMap<>();
   private final Map<Incident, List<Ambulance>> ambulancesAtScene = new HashMap<>();
+  private final Map<NewCall, Event> callEvents = new IdentityHashMap<>();
+  // scratch space for dispatch, only used until a dispatch redispatches reassigned calls
+  private final List<Ambulance> candidates = new ArrayList<>();
+  private int[] candidateScores = new int[0];
+  private int[] candidateOrder = new int[0];
+  private IncidentStream incidentStream;
   private SimulationResults simulationResults;
+  private FleetState fleetState;
+  private double cutoff = Double.POSITIVE_INFINITY;
+  private LocalDateTime horizon = null;
+  private BooleanSupplier cancelled = () -> false;
+  private int firstAmbulanceId = 1;
+  private boolean recordCheckpoint = false;
+  private boolean recordIncidents = false;
+  private Path tracePath = null;
+  private TraceWriter trace = null;
+  private int nextIncident;
+  private final Set<ShiftType> enteredShifts = EnumSet.noneOf(ShiftType.class);
   private LocalDateTime time;
   private ShiftType currentShift;
-  private long lastVisualUpdate = 0;
   private LocalDateTime lastInternalUpdate = LocalDateTime.MIN;
 
   public Simulation(final Config config) {
+    this(config, 0);
+  }
+
+  public Simulation(final Config config, final int factor) {
+    this(config, factor, EnumSet.allOf(BaseStation.class), null);
+  }
+
+  // a simulation of one zone, only staffing its own base stations and receiving its own incidents
+  Simulation(
+      final Config config,
+      final int factor,
+      final Set<BaseStation> baseStations,
+      final Predicate<Incident> incidentFilter) {
     this.config = config;
+    this.factor = factor;
     this.visualizationMode = false;
-    this.simulationUpdateInterval = null;
-    this.onTimeUpdate = null;
+    this.snapshots = null;
+    this.baseStations = baseStations;
+    this.incidentFilter = incidentFilter;
   }
 
-  public Simulation(
-      final Config config,
-      final TriConsumer<LocalDateTime, Collection<Ambulance>, Collection<NewCall>> onTimeUpdate,
-      final DoubleProperty simulationUpdateInterval) {
+  public Simulation(final Config config, final SnapshotBuffer snapshots) {
     this.config = config;
+    this.factor = 0;
     this.visualizationMode = true;
-    this.simulationUpdateInterval = simulationUpdateInterval;
-    this.onTimeUpdate = onTimeUpdate;
+    this.snapshots = snapshots;
+    this.baseStations = EnumSet.allOf(BaseStation.class);
+    this.incidentFilter = null;
   }
 
   public static Simulation withConfig(final Config config) {
@@ -85,90 +115,542 @@ public final class Simulation {
     return new Simulation(Config.withinPeriod(start, end));
   }
 
+  // publishes a snapshot every two simulated minutes and closes the buffer when done
   public static void visualizedSimulation(
-      final Allocation allocation,
-      final TriConsumer<LocalDateTime, Collection<Ambulance>, Collection<NewCall>> onTimeUpdate,
-      final DoubleProperty simulationUpdateInterval) {
-    new Simulation(Config.defaultConfig(), onTimeUpdate, simulationUpdateInterval)
-        .simulate(allocation);
+      final Allocation allocation, final SnapshotBuffer snapshots) {
+    try {
+      new Simulation(Config.defaultConfig(), snapshots).simulate(allocation);
+    } finally {
+      snapshots.close();
+    }
   }
 
   public static SimulationResults simulate(
       final List<Integer> dayShiftAllocation, final List<Integer> nightShiftAllocation) {
     return withDefaultConfig()
+        .withIncidentRecords()
         .simulate(new Allocation(List.of(dayShiftAllocation, nightShiftAllocation)));
   }
 
   public static SimulationResults simulate(
       final List<Integer> dayShiftAllocation, final List<Integer> nightShiftAllocation, int f) {
-    factor = f;
-    return withDefaultConfig()
+    return new Simulation(Config.defaultConfig(), f)
+        .withIncidentRecords()
         .simulate(new Allocation(List.of(dayShiftAllocation, nightShiftAllocation)));
   }
 
-  public SimulationResults simulate(final Allocation allocation) {
-    initialize(allocation);
-    Event event;
-    time = null;
+  public static List<SimulationResults> simulateAll(final List<Allocation> allocations) {
+    return simulateAll(Config.defaultConfig(), allocations);
+  }
+
+  public static List<SimulationResults> simulateAll(
+      final Config config, final List<Allocation> allocations) {
+    var cutoffs = new double[allocations.size()];
+    Arrays.fill(cutoffs, Double.POSITIVE_INFINITY);
+    return simulateAll(config, allocations, cutoffs);
+  }
+
+  public static List<SimulationResults> simulateAll(
+      final Config config, final List<Allocation> allocations, final double[] cutoffs) {
+    var checkpoints = Collections.<Checkpoint>nCopies(allocations.size(), null);
+    return simulateAll(config, allocations, cutoffs, checkpoints, false, null);
+  }
+
+  /***
+   * Simulates the allocations up to the horizon only. Allocations with incidents left at the
+   * horizon are truncated at the best fitness they could still reach on the full period.
+   ***/
+  public static List<SimulationResults> simulateUntil(
+      final Config config, final List<Allocation> allocations, final LocalDateTime horizon) {
+    var cutoffs = new double[allocations.size()];
+    Arrays.fill(cutoffs, Double.POSITIVE_INFINITY);
+    var checkpoints = Collections.<Checkpoint>nCopies(allocations.size(), null);
+    return simulateAll(config, allocations, cutoffs, checkpoints, false, horizon);
+  }
+
+  /***
+   * Simulates the allocations, each resuming from its checkpoint when it is still valid. The
+   * results carry the checkpoint that was resumed from, or a new one when none could be used.
+   ***/
+  public static List<SimulationResults> simulateAll(
+      final Config config,
+      final List<Allocation> allocations,
+      final double[] cutoffs,
+      final List<Checkpoint> checkpoints) {
+    return simulateAll(config, allocations, cutoffs, checkpoints, true, null);
+  }
 
-    while (!eventQueue.isEmpty()) {
-      event = eventQueue.poll();
-      if (time != null && event.getTime().isBefore(time)) {
-        throw new IllegalStateException("Event queue is not sorted");
+  private static List<SimulationResults> simulateAll(
+      final Config config,
+      final List<Allocation> allocations,
+      final double[] cutoffs,
+      final List<Checkpoint> checkpoints,
+      final boolean recordCheckpoints,
+      final LocalDateTime horizon) {
+    return IntStream.range(0, allocations.size())
+        .parallel()
+        .mapToObj(
+            i -> {
+              var simulation = new Simulation(config);
+              simulation.recordCheckpoint = recordCheckpoints;
+              simulation.horizon = horizon;
+              simulation.start(allocations.get(i), cutoffs[i], checkpoints.get(i));
+              return simulation.run();
+            })
+        .toList();
+  }
+
+  /***
+   * Splits the simulated period into slices that are simulated in parallel, each with its own
+   * warm-up buffer, and merges their results. This is an approximation of the serial
+   * simulation, since no state is carried over from one slice to the next.
+   ***/
+  public static SimulationResults simulateSliced(
+      final Config config,
+      final Allocation allocation,
+      final Duration slice,
+      final int bufferSize) {
+    return simulateSliced(config, allocation, slice, bufferSize, () -> false);
+  }
+
+  /***
+   * Simulates the slices like above, giving up on all of them once the supplier returns true.
+   * The slices stop at different points, so a cancelled simulation is only truncated at the
+   * trivial fitness bound of zero.
+   ***/
+  public static SimulationResults simulateSliced(
+      final Config config,
+      final Allocation allocation,
+      final Duration slice,
+      final int bufferSize,
+      final BooleanSupplier cancelled) {
+    var results =
+        slices(config, slice, bufferSize).parallelStream()
+            .map(
+                sliceConfig ->
+                    new Simulation(sliceConfig).withCancellation(cancelled).simulate(allocation))
+            .toList();
+    var merged = SimulationResults.merge(results);
+    if (results.stream().anyMatch(SimulationResults::isTruncated)) {
+      merged.truncate(0.0);
+    }
+    return merged;
+  }
+
+  // consecutive periods that share their boundaries, so every incident of the config is counted
+  // in exactly one of them
+  static List<Config> slices(final Config config, final Duration slice, final int bufferSize) {
+    var slices = new ArrayList<Config>();
+    var sliceStart = config.START_DATE_TIME();
+    while (sliceStart.isBefore(config.END_DATE_TIME())) {
+      var sliceEnd = sliceStart.plus(slice);
+      if (sliceEnd.isAfter(config.END_DATE_TIME())) {
+        sliceEnd = config.END_DATE_TIME();
       }
+      slices.add(config.withPeriod(sliceStart, sliceEnd, bufferSize));
+      sliceStart = sliceEnd;
+    }
+    return slices;
+  }
 
-      time = event.getTime();
-      setCurrentShift();
-
-      try {
-        switch (event) {
-          case NewCall newCall -> handleNewCall(newCall, false);
-          case AbortIncident abortIncident -> handleAbortIncident(abortIncident);
-          case SceneArrival sceneArrival -> handleSceneArrival(sceneArrival);
-          case SceneDeparture sceneDeparture -> handleSceneDeparture(sceneDeparture);
-          case HospitalDeparture hospitalDeparture -> handleHospitalDeparture(hospitalDeparture);
-          case LocationUpdate locationUpdate -> handleLocationUpdate(locationUpdate);
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-        System.exit(0);
+  /***
+   * Keeps a record of every simulated response in the results, for experiments that look at more
+   * than the averages. Without it the results only keep running totals.
+   ***/
+  public Simulation withIncidentRecords() {
+    recordIncidents = true;
+    return this;
+  }
+
+  /***
+   * Writes every processed event, and every dispatch decision, to a binary trace file that can be
+   * read back with a TraceReader.
+   ***/
+  public Simulation withTrace(Path path) {
+    tracePath = path;
+    return this;
+  }
+
+  /***
+   * Makes the simulation give up as soon as the supplier returns true, like when another
+   * neighbour has already been accepted. A cancelled simulation is truncated at the best fitness
+   * it could still reach.
+   ***/
+  public Simulation withCancellation(BooleanSupplier cancelled) {
+    this.cancelled = cancelled;
+    return this;
+  }
+
+  /***
+   * Records a checkpoint in the results, so that neighbouring allocations can resume from it. A
+   * simulation that resumes from a checkpoint hands that one on instead of recording a new one.
+   ***/
+  public Simulation withCheckpointRecording() {
+    recordCheckpoint = true;
+    return this;
+  }
+
+  public SimulationResults simulate(final Allocation allocation) {
+    return simulate(allocation, Double.POSITIVE_INFINITY);
+  }
+
+  /***
+   * Simulates the allocation, but gives up as soon as the fitness can no longer get below the
+   * cutoff. The results of an abandoned simulation are marked as truncated.
+   ***/
+  public SimulationResults simulate(final Allocation allocation, final double cutoff) {
+    start(allocation, cutoff, null);
+    return run();
+  }
+
+  /***
+   * Simulates the allocation, resuming from the checkpoint of a neighbouring allocation when it
+   * is still valid for this one. The results carry that checkpoint, or a new one when recording
+   * is enabled and the simulation gets that far.
+   ***/
+  public SimulationResults simulate(
+      final Allocation allocation, final double cutoff, final Checkpoint checkpoint) {
+    start(allocation, cutoff, checkpoint);
+    return run();
+  }
+
+  // numbers the ambulances from the given id, so that simulations sharing results keep them apart
+  void numberAmbulancesFrom(int id) {
+    firstAmbulanceId = id;
+  }
+
+  int fleetSize() {
+    return ambulances.size();
+  }
+
+  void start(final Allocation allocation) {
+    start(allocation, Double.POSITIVE_INFINITY, null);
+  }
+
+  private void start(
+      final Allocation allocation, final double cutoff, final Checkpoint checkpoint) {
+    initialize(allocation, cutoff);
+    if (checkpoint != null) {
+      if (resumeFrom(checkpoint)) {
+        simulationResults.setCheckpoint(checkpoint);
+      } else {
+        initialize(allocation, cutoff);
       }
+    }
+  }
+
+  // the trace is only written by simulations run to the end here, and is closed however they end
+  private SimulationResults run() {
+    if (tracePath == null) {
+      return runEvents();
+    }
+    try (var writer = new TraceWriter(tracePath)) {
+      trace = writer;
+      return runEvents();
+    } finally {
+      trace = null;
+    }
+  }
 
-      if (visualizationMode) {
-        visualizationCallback();
+  private SimulationResults runEvents() {
+    while (nextIncident < incidentStream.size()) {
+      if (isBeyondHorizon()) {
+        return simulationResults;
+      }
+      step();
+      if (isBeyondCutoff() || isCancelled()) {
+        return simulationResults;
       }
     }
+    processEventsUntil(LocalDateTime.MAX);
 
     return simulationResults;
   }
 
-  private void createEventQueue() {
-    if (memoizedIncidentList.containsKey(config)) {
-      var events = memoizedIncidentList.get(config);
-      eventQueue.addAll(events.stream().map(this::toNewCall).toList());
-    } else {
-      var incidents = IncidentIO.incidents.stream().filter(this::isInTimeRange).toList();
-      eventQueue.addAll(incidents.stream().map(this::toNewCall).toList());
-      memoizedIncidentList.put(config, incidents);
+  private NewCall step() {
+    var newCall = incidentStream.newCall(nextIncident);
+    processEventsUntil(newCall.getTime());
+    checkpointBefore(newCall.getTime());
+    process(newCall);
+    nextIncident++;
+    return newCall;
+  }
+
+  LocalDateTime nextIncidentTime() {
+    return nextIncident < incidentStream.size() ? incidentStream.callReceived(nextIncident) : null;
+  }
+
+  // an incident that finds no ambulance in this zone is handed over to the overflow zone
+  // instead of waiting in the call queue
+  void step(Consumer<NewCall> overflow) {
+    var newCall = step();
+    if (overflow != null && callQueue.remove(newCall)) {
+      overflow.accept(new NewCall(newCall, time));
     }
   }
 
-  private boolean isInTimeRange(Incident incident) {
-    var callReceived = incident.callReceived();
-    var bufferStartDateTime = config.START_DATE_TIME().minusHours(config.BUFFER_SIZE());
-    return callReceived.isAfter(bufferStartDateTime)
-        && callReceived.isBefore(config.END_DATE_TIME());
+  // incidents handed over from another zone are never handed over again
+  void receive(NewCall newCall) {
+    processEventsUntil(newCall.getTime());
+    process(new NewCall(newCall, newCall.getTime()));
   }
 
-  private NewCall toNewCall(Incident incident) {
-    var providesResponseTime =
-        incident.callReceived().isAfter(config.START_DATE_TIME())
-            && !incident.urgencyLevel().isRegular();
-    return new NewCall(incident, providesResponseTime);
+  SimulationResults drain() {
+    processEventsUntil(LocalDateTime.MAX);
+    return simulationResults;
   }
 
-  private void initialize(final Allocation allocation) {
+  private boolean isBeyondCutoff() {
+    if (cutoff == Double.POSITIVE_INFINITY) {
+      return false;
+    }
+    var bound =
+        simulationResults.optimisticFitness(
+            config.USE_URGENCY_FITNESS(), config.RESPONSE_TIME_PERCENTILE(), incidentStream);
+    if (bound > cutoff) {
+      simulationResults.truncate(bound);
+      return true;
+    }
+    return false;
+  }
+
+  // the fitness is still unknown at the horizon, so only its optimistic bound is kept
+  private boolean isBeyondHorizon() {
+    if (horizon == null || incidentStream.callReceived(nextIncident).isBefore(horizon)) {
+      return false;
+    }
+    simulationResults.truncate(
+        simulationResults.optimisticFitness(
+            config.USE_URGENCY_FITNESS(), config.RESPONSE_TIME_PERCENTILE(), incidentStream));
+    return true;
+  }
+
+  private boolean isCancelled() {
+    if (!cancelled.getAsBoolean()) {
+      return false;
+    }
+    simulationResults.truncate(
+        simulationResults.optimisticFitness(
+            config.USE_URGENCY_FITNESS(), config.RESPONSE_TIME_PERCENTILE(), incidentStream));
+    return true;
+  }
+
+  // internal events happening at the same time as a new incident are processed first
+  private void processEventsUntil(LocalDateTime until) {
+    while (!eventQueue.isEmpty() && !eventQueue.peek().getTime().isAfter(until)) {
+      checkpointBefore(eventQueue.peek().getTime());
+      process(eventQueue.poll());
+    }
+  }
+
+  // the allocation of a shift type only matters once the simulation has entered it, so the
+  // state just before entering a new shift type is shared by all allocations that agree on
+  // the shift types entered so far
+  private void checkpointBefore(LocalDateTime eventTime) {
+    if (recordCheckpoint
+        && simulationResults.getCheckpoint() == null
+        && !enteredShifts.isEmpty()
+        && !enteredShifts.contains(ShiftType.get(eventTime))) {
+      simulationResults.setCheckpoint(new Checkpoint(freeze()));
+    }
+  }
+
+  Simulation freeze() {
+    var frozen = new Simulation(config, factor, baseStations, incidentFilter);
+    var copy = new StateCopy();
+    for (var baseStation : baseStations) {
+      var frozenAmbulances = new ArrayList<Ambulance>();
+      for (var ambulance : baseStationAmbulances.get(baseStation)) {
+        var frozenAmbulance = new Ambulance(baseStation, ambulance.id, config, frozen.callEvents);
+        copy.map(ambulance, frozenAmbulance);
+        frozenAmbulances.add(frozenAmbulance);
+      }
+      frozen.baseStationAmbulances.put(baseStation, frozenAmbulances);
+      frozen.ambulances.addAll(frozenAmbulances);
+    }
+    for (var shift : ShiftType.values()) {
+      frozen.baseStationShiftCount.put(shift, new HashMap<>(baseStationShiftCount.get(shift)));
+    }
+    frozen.copyStateFrom(this, copy);
+    return frozen;
+  }
+
+  // takes over a frozen state of this same simulation
+  void restore(Simulation state) {
+    var copy = new StateCopy();
+    for (var baseStation : baseStations) {
+      var ambulancesStation = baseStationAmbulances.get(baseStation);
+      var stateAmbulances = state.baseStationAmbulances.get(baseStation);
+      for (var i = 0; i < ambulancesStation.size(); i++) {
+        copy.map(stateAmbulances.get(i), ambulancesStation.get(i));
+      }
+    }
+    copyStateFrom(state, copy);
+  }
+
+  private boolean resumeFrom(Checkpoint checkpoint) {
+    var state = checkpoint.state();
+    if (!state.config.equals(config)) {
+      return false;
+    }
+    for (var shift : state.enteredShifts) {
+      if (!state.baseStationShiftCount.get(shift).equals(baseStationShiftCount.get(shift))) {
+        return false;
+      }
+    }
+
+    // bring the fresh fleet into the shift of the checkpoint, then take over the state of
+    // the ambulances on duty in the same order as they appear in the checkpoint
+    time = state.time;
+    setCurrentShift();
+    var copy = new StateCopy();
+    for (var baseStation : baseStations) {
+      var onDuty = onDuty(baseStationAmbulances.get(baseStation));
+      var stateOnDuty = onDuty(state.baseStationAmbulances.get(baseStation));
+      if (onDuty.size() != stateOnDuty.size()) {
+        return false;
+      }
+      for (var i = 0; i < onDuty.size(); i++) {
+        copy.map(stateOnDuty.get(i), onDuty.get(i));
+      }
+    }
+    copyStateFrom(state, copy);
+    return true;
+  }
+
+  private static List<Ambulance> onDuty(List<Ambulance> ambulances) {
+    return ambulances.stream().filter(ambulance -> !ambulance.isOffDuty()).toList();
+  }
+
+  private void copyStateFrom(Simulation source, StateCopy copy) {
+    // adding the events in heap order reproduces the heap, and with it the order of ties
+    eventQueue.clear();
+    for (var event : source.eventQueue) {
+      eventQueue.add(copy.event(event));
+    }
+    callQueue.clear();
+    for (var newCall : source.callQueue) {
+      callQueue.add(copy.newCall(newCall));
+    }
+    ambulancesAtScene.clear();
+    source.ambulancesAtScene.forEach(
+        (incident, atScene) ->
+            ambulancesAtScene.put(incident, new ArrayList<>(copy.ambulances(atScene))));
+    callEvents.clear();
+    copy.finish(source.callEvents, callEvents);
+
+    plannedTravelTimes.clear();
+    plannedTravelTimes.putAll(source.plannedTravelTimes);
+    remainingOffDutyAmbulances.clear();
+    remainingOffDutyAmbulances.putAll(source.remainingOffDutyAmbulances);
+    enteredShifts.clear();
+    enteredShifts.addAll(source.enteredShifts);
+    incidentStream = source.incidentStream;
+    simulationResults = new SimulationResults(source.simulationResults);
+    nextIncident = source.nextIncident;
+    time = source.time;
+    currentShift = source.currentShift;
+    lastInternalUpdate = source.lastInternalUpdate;
+  }
+
+  private void process(Event event) {
+    if (time != null && event.getTime().isBefore(time)) {
+      throw new IllegalStateException("Event queue is not sorted");
+    }
+
+    time = event.getTime();
+    setCurrentShift();
+    enteredShifts.add(currentShift);
+
+    try {
+      switch (event) {
+        case NewCall newCall -> handleNewCall(newCall, false);
+        case AbortIncident abortIncident -> handleAbortIncident(abortIncident);
+        case SceneArrival sceneArrival -> handleSceneArrival(sceneArrival);
+        case SceneDeparture sceneDeparture -> handleSceneDeparture(sceneDeparture);
+        case HospitalDeparture hospitalDeparture -> handleHospitalDeparture(hospitalDeparture);
+        case LocationUpdate locationUpdate -> handleLocationUpdate(locationUpdate);
+      }
+      if (trace != null) {
+        traceEvent(event);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      System.exit(0);
+    }
+
+    if (visualizationMode) {
+      visualizationCallback();
+    }
+  }
+
+  // ambulance events are traced with the location of the ambulance after the event, with one
+  // entry for each ambulance when the event concerns several
+  private void traceEvent(Event event) {
+    var incidentId = event.newCall == null ? -1 : incidentStream.id(event.newCall.incident);
+    switch (event) {
+      case PartiallyRespondedCall call -> trace.write(
+          TraceType.PARTIALLY_RESPONDED_CALL,
+          time,
+          -1,
+          incidentStream.id(call.incident),
+          call.incident.getLocation().id());
+      case NewCall newCall -> trace.write(
+          TraceType.NEW_CALL,
+          time,
+          -1,
+          incidentStream.id(newCall.incident),
+          newCall.incident.getLocation().id());
+      case AbortIncident abortIncident -> {
+        for (var ambulance : abortIncident.getAmbulances()) {
+          traceAmbulance(TraceType.ABORT_INCIDENT, ambulance, incidentId);
+        }
+      }
+      case SceneArrival sceneArrival -> traceAmbulance(
+          TraceType.SCENE_ARRIVAL, sceneArrival.ambulance, incidentId);
+      case SceneDeparture sceneDeparture -> {
+        for (var ambulance : sceneDeparture.getAmbulances()) {
+          traceAmbulance(
+              ambulance.isTransportingPatient()
+                  ? TraceType.HOSPITAL_TRANSPORT
+                  : TraceType.SCENE_DEPARTURE,
+              ambulance,
+              incidentId);
+        }
+      }
+      case HospitalDeparture hospitalDeparture -> traceAmbulance(
+          TraceType.HOSPITAL_DEPARTURE, hospitalDeparture.ambulance, incidentId);
+      case LocationUpdate locationUpdate -> traceAmbulance(
+          TraceType.LOCATION_UPDATE, locationUpdate.ambulance, incidentId);
+    }
+  }
+
+  private void traceAmbulance(TraceType type, Ambulance ambulance, int incidentId) {
+    trace.write(type, time, ambulance.id, incidentId, ambulance.getCurrentLocation().id());
+  }
+
+  // dispatches are traced while the call is handled, so just before the entry of the call
+  private void traceDispatch(NewCall newCall, List<Ambulance> dispatchedAmbulances) {
+    var candidates = new int[dispatchedAmbulances.size()];
+    var scores = new int[dispatchedAmbulances.size()];
+    for (var i = 0; i < candidates.length; i++) {
+      candidates[i] = dispatchedAmbulances.get(i).id;
+      scores[i] = dispatchedAmbulances.get(i).getDispatchScore();
+    }
+    trace.write(
+        TraceType.DISPATCH,
+        time,
+        -1,
+        incidentStream.id(newCall.incident),
+        newCall.incident.getLocation().id(),
+        candidates,
+        scores);
+  }
+
+  private void initialize(final Allocation allocation, final double cutoff) {
     // in case simulate() is called multiple times on the same simulation object
+    this.cutoff = cutoff;
+    ambulances.clear();
     callQueue.clear();
     eventQueue.clear();
     baseStationShiftCount.clear();
@@ -176,25 +658,30 @@ public final class Simulation {
     baseStationAmbulances.clear();
     remainingOffDutyAmbulances.clear();
     ambulancesAtScene.clear();
-
-    createEventQueue();
-    simulationResults = new SimulationResults();
+    callEvents.clear();
+
+    incidentStream =
+        incidentFilter == null
+            ? IncidentStream.of(config)
+            : IncidentStream.of(config).filter(incidentFilter);
+    nextIncident = 0;
+    enteredShifts.clear();
+    time = null;
+    simulationResults = new SimulationResults(recordIncidents);
     baseStationShiftCount.put(ShiftType.DAY, new HashMap<>());
     baseStationShiftCount.put(ShiftType.NIGHT, new HashMap<>());
     currentShift = ShiftType.get(config.START_DATE_TIME());
-    Ambulance.setConfig(config);
-
-    var j = 1;
-    for (var baseStation : BaseStation.values()) {
-      var dayShiftCount =
-          Collections.frequency(allocation.getDayShiftAllocation(), baseStation.getId());
-      var nightShiftCount =
-          Collections.frequency(allocation.getNightShiftAllocation(), baseStation.getId());
+
+    var j = firstAmbulanceId;
+    var counts = allocation.counts();
+    for (var baseStation : baseStations) {
+      var dayShiftCount = counts.get(0, baseStation.getId());
+      var nightShiftCount = counts.get(1, baseStation.getId());
       var maxBaseStationAmbulances = Math.max(dayShiftCount, nightShiftCount);
 
       var ambulancesStation =
           IntStream.rangeClosed(j, maxBaseStationAmbulances + j - 1)
-              .mapToObj(i -> new Ambulance(baseStation, i))
+              .mapToObj(i -> new Ambulance(baseStation, i, config, callEvents))
               .toList();
       j += ambulancesStation.size();
 
@@ -204,9 +691,15 @@ public final class Simulation {
 
       ambulances.addAll(ambulancesStation);
       remainingOffDutyAmbulances.put(baseStation, 0);
-      ambulancesStation.stream()
-          .limit(baseStationShiftCount.get(currentShift).get(baseStation))
-          .forEach(Ambulance::startNewShift);
+    }
+
+    fleetState = new FleetState(ambulances, config);
+    for (var baseStation : baseStations) {
+      var ambulancesStation = baseStationAmbulances.get(baseStation);
+      var shiftCount = baseStationShiftCount.get(currentShift).get(baseStation);
+      for (var i = 0; i < shiftCount; i++) {
+        ambulancesStation.get(i).startNewShift();
+      }
     }
   }
 
@@ -222,22 +715,30 @@ public final class Simulation {
             prevShiftCountMap.get(baseStation) - shiftCountMap.get(baseStation);
 
         if (ambulanceDifference > 0) {
-          var availableAmbulances =
-              baseStationAmbulances.get(baseStation).stream()
-                  .filter(Ambulance::isAvailable)
-                  .limit(ambulanceDifference)
-                  .toList();
-
-          availableAmbulances.forEach(Ambulance::finishShift);
-
-          remainingOffDutyAmbulances.put(
-              baseStation, ambulanceDifference - availableAmbulances.size());
+          var toFinish = Math.min(ambulanceDifference, fleetState.availableAt(baseStation));
+          remainingOffDutyAmbulances.put(baseStation, ambulanceDifference - toFinish);
+
+          for (var ambulance : baseStationAmbulances.get(baseStation)) {
+            if (toFinish == 0) {
+              break;
+            }
+            if (ambulance.isAvailable()) {
+              ambulance.finishShift();
+              toFinish--;
+            }
+          }
 
         } else if (ambulanceDifference < 0) {
-          baseStationAmbulances.get(baseStation).stream()
-              .filter(Ambulance::isOffDuty)
-              .limit(-ambulanceDifference)
-              .forEach(Ambulance::startNewShift);
+          var toStart = -ambulanceDifference;
+          for (var ambulance : baseStationAmbulances.get(baseStation)) {
+            if (toStart == 0) {
+              break;
+            }
+            if (ambulance.isOffDuty()) {
+              ambulance.startNewShift();
+              toStart--;
+            }
+          }
         }
       }
     }
@@ -260,7 +761,7 @@ public final class Simulation {
     if (incident.departureFromScene().isEmpty() && incident.arrivalAtScene().isEmpty()) {
       // Assume incident was aborted
       var abortTime = time.plusSeconds(incident.getTimeBeforeAborting());
-      eventQueue.add(new AbortIncident(abortTime, newCall, dispatchedAmbulances));
+      schedule(new AbortIncident(abortTime, newCall, dispatchedAmbulances));
 
       for (var ambulance : dispatchedAmbulances) {
         if (ambulance.getNextCall() != null) {
@@ -314,7 +815,7 @@ public final class Simulation {
     for (var ambulance : dispatchedAmbulances) {
       var arrivalTime =
           time.plusSeconds(handlingTime).plusSeconds(ambulance.getUpdatedTimeToIncident(incident));
-      eventQueue.add(new SceneArrival(arrivalTime, newCall, ambulance, departureTime));
+      schedule(new SceneArrival(arrivalTime, newCall, ambulance, departureTime));
 
       if (ambulance.getNextCall() != null) {
         // ambulance is queued for this event but busy with previous
@@ -329,6 +830,12 @@ public final class Simulation {
     }
   }
 
+  // the latest event scheduled for a call tells when the ambulances on it are done
+  private void schedule(Event event) {
+    eventQueue.add(event);
+    callEvents.put(event.newCall, event);
+  }
+
   private void handleAbortIncident(AbortIncident abortIncident) {
     for (var ambulance : abortIncident.getAmbulances()) {
       if (ambulance.getNextCall() != null) {
@@ -365,7 +872,7 @@ public final class Simulation {
 
     var dispatchedAmbulances = ambulancesAtScene.remove(incident);
 
-    eventQueue.add(new SceneDeparture(departureTime, sceneArrival.newCall, dispatchedAmbulances));
+    schedule(new SceneDeparture(departureTime, sceneArrival.newCall, dispatchedAmbulances));
   }
 
   private void handleSceneDeparture(SceneDeparture sceneDeparture) {
@@ -378,7 +885,7 @@ public final class Simulation {
         var transportTime = ambulance.getTimeToHospital();
         var hospitalTime = newCall.incident.getHospitalTime(config);
         var availableTime = time.plusSeconds(transportTime + hospitalTime);
-        eventQueue.add(new HospitalDeparture(availableTime, ambulance, ambulance.getCall()));
+        schedule(new HospitalDeparture(availableTime, ambulance, ambulance.getCall()));
 
         var updateTime = time.plusMinutes(config.UPDATE_LOCATION_PERIOD());
         if (updateTime.isBefore(availableTime)) {
@@ -450,57 +957,68 @@ public final class Simulation {
     var nonTransportDemand = newCall.getNonTransportingVehicleDemand();
     var demand = transportDemand + nonTransportDemand;
 
-    var available = new ArrayList<Ambulance>();
-    var reassignable = new ArrayList<Ambulance>();
-    var queueable = new ArrayList<Ambulance>();
-    // fill available ambulance lists
-    getAllAvailableAmbulances(incident, demand, available, reassignable, queueable);
+    // available ambulances, then ambulances already on their way to an incident, then
+    // ambulances transporting to hospital that can be queued for their next incident
+    candidates.clear();
+    fleetState.addAvailable(candidates);
+    var reassignStart = candidates.size();
+    if (doReDispatch(incident)) {
+      fleetState.addReassignable(incident, candidates);
+    }
+    var queueStart = candidates.size();
+    if (doQueueNext(demand)) {
+      fleetState.addQueueable(candidates);
+    }
 
-    var supply = available.size();
+    var supply = candidates.size();
     if (supply == 0) {
       callQueue.add(newCall);
       return Collections.emptyList();
     }
 
     // update ambulance dispatch score based on dispatch strategy
-    available.forEach(
-        a ->
-            config
-                .DISPATCH_POLICY()
-                .updateAmbulance(
-                    a, available, incident, demand, baseStationAmbulances, time, config, factor));
-
-    // sort ambulances based on dispatch score.
-    // if reassign score is equal to regular, regular ambulance will be first when sorted
-    var bestAmbulances =
-        available.stream().sorted(Comparator.comparing(Ambulance::getDispatchScore)).toList();
-
-    // dispatch transport ambulances
-    var hospital = transportDemand > 0 ? findNearestHospital(incident) : null;
-    var transportAmbulances =
-        bestAmbulances.subList(0, Math.min(transportDemand, supply)).stream()
-            .peek(a -> a.dispatch(newCall, hospital))
-            .toList();
-    var dispatchedTransport = transportAmbulances.size();
-
-    // dispatch non-transport ambulances
-    var nonTransportAmbulances =
-        bestAmbulances
-            .subList(
-                dispatchedTransport, Math.min(dispatchedTransport + nonTransportDemand, supply))
-            .stream()
-            .peek(a -> a.dispatch(newCall, null))
-            .toList();
-    var dispatchedNonTransport = nonTransportAmbulances.size();
+    var dispatchPolicy = config.DISPATCH_POLICY();
+    for (var i = 0; i < supply; i++) {
+      dispatchPolicy.updateAmbulance(
+          candidates.get(i), candidates, incident, demand, fleetState, time, config, factor);
+    }
+    if (candidateScores.length < supply) {
+      candidateScores = new int[fleetState.size()];
+      candidateOrder = new int[fleetState.size()];
+    }
+    for (var i = 0; i < supply; i++) {
+      candidateScores[i] = candidates.get(i).getDispatchScore();
+    }
+
+    // if reassign score is equal to regular, regular ambulance will be picked first
+    var dispatchCount = Math.min(demand, supply);
+    selectBest(supply, dispatchCount);
+
+    // dispatch transport ambulances first, then non-transport ambulances
+    var hospital = transportDemand > 0 ? incidentStream.nearestHospital(incident) : null;
+    var dispatchedTransport = Math.min(transportDemand, dispatchCount);
+    var dispatchedNonTransport = dispatchCount - dispatchedTransport;
+    var dispatchedAmbulances = new ArrayList<Ambulance>(dispatchCount);
+    for (var i = 0; i < dispatchCount; i++) {
+      var ambulance = candidates.get(candidateOrder[i]);
+      ambulance.dispatch(newCall, i < dispatchedTransport ? hospital : null);
+      dispatchedAmbulances.add(ambulance);
+    }
+    if (trace != null) {
+      traceDispatch(newCall, dispatchedAmbulances);
+    }
 
-    // all dispatched ambulances
-    var dispatchedAmbulances = Utils.concatenateLists(transportAmbulances, nonTransportAmbulances);
+    // queueing is only done for calls needing a single ambulance
+    var queued = candidateOrder[0] >= queueStart;
+    var reassigned = selectedBetween(reassignStart, queueStart, dispatchCount);
 
-    // remove old events if ambulances were reassigned
-    removeOldDispatchEvents(dispatchedAmbulances, reassignable);
-    dispatchedAmbulances.stream()
-        .filter(ambulance -> !queueable.contains(ambulance))
-        .forEach(ambulance -> ambulance.setCall(newCall));
+    // remove old events if ambulances were reassigned, this redispatches their old calls
+    removeOldDispatchEvents(reassigned);
+    if (!queued) {
+      for (var ambulance : dispatchedAmbulances) {
+        ambulance.setCall(newCall);
+      }
+    }
 
     // create partially responded call
     if (dispatchedTransport < transportDemand || dispatchedNonTransport < nonTransportDemand) {
@@ -513,26 +1031,43 @@ public final class Simulation {
     return dispatchedAmbulances;
   }
 
-  private void getAllAvailableAmbulances(
-      Incident incident,
-      int demand,
-      List<Ambulance> availableAmbulances,
-      List<Ambulance> reassignAmbulances,
-      List<Ambulance> queueAmbulances) {
-
-    availableAmbulances.addAll(Utils.filterList(ambulances, Ambulance::isAvailable));
-
-    // add ambulances that are already on their way to an incident
-    if (doReDispatch(incident)) {
-      reassignAmbulances.addAll(Utils.filterList(ambulances, a -> a.canBeReassigned(incident)));
-      availableAmbulances.addAll(reassignAmbulances);
+  // moves the best candidates to the front of candidateOrder by a partial selection sort,
+  // ties are broken by candidate order like a stable sort would
+  private void selectBest(int supply, int count) {
+    for (var i = 0; i < supply; i++) {
+      candidateOrder[i] = i;
+    }
+    for (var i = 0; i < count; i++) {
+      var best = i;
+      for (var j = i + 1; j < supply; j++) {
+        var candidate = candidateOrder[j];
+        var bestCandidate = candidateOrder[best];
+        if (candidateScores[candidate] < candidateScores[bestCandidate]
+            || (candidateScores[candidate] == candidateScores[bestCandidate]
+                && candidate < bestCandidate)) {
+          best = j;
+        }
+      }
+      var selected = candidateOrder[best];
+      candidateOrder[best] = candidateOrder[i];
+      candidateOrder[i] = selected;
     }
+  }
 
-    // add ambulances that are transporting to hospital and can be queued for next incident
-    if (doQueueNext(demand)) {
-      queueAmbulances.addAll(Utils.filterList(ambulances, Ambulance::canBeQueued));
-      availableAmbulances.addAll(queueAmbulances);
+  // the selected candidates within [start, end) in candidate order
+  private List<Ambulance> selectedBetween(int start, int end, int count) {
+    if (start == end) {
+      return Collections.emptyList();
+    }
+    var selected = new ArrayList<Ambulance>();
+    for (var candidate = start; candidate < end; candidate++) {
+      for (var i = 0; i < count; i++) {
+        if (candidateOrder[i] == candidate) {
+          selected.add(candidates.get(candidate));
+        }
+      }
     }
+    return selected;
   }
 
   private boolean doReDispatch(Incident incident) {
@@ -545,31 +1080,18 @@ public final class Simulation {
     return config.ENABLE_QUEUE_NEXT() && totalDemand == 1;
   }
 
-  private void removeOldDispatchEvents(
-      List<Ambulance> dispatchedAmbulances, List<Ambulance> reassignAmbulances) {
+  private void removeOldDispatchEvents(List<Ambulance> reassignedAmbulances) {
     // remove old events for dispatched reassigned ambulances
-    if (config.ENABLE_REDISPATCH() && !reassignAmbulances.isEmpty()) {
-      reassignAmbulances.stream()
-          .filter(dispatchedAmbulances::contains)
-          .forEach(
-              ambulance -> {
-                var oldCall = ambulance.getCall();
-                eventQueue.removeIf(e -> Objects.equals(e.newCall, oldCall));
-                handleNewCall(oldCall, true);
-                ambulance.setReassigned(true);
-              });
+    for (var ambulance : reassignedAmbulances) {
+      var oldCall = ambulance.getCall();
+      eventQueue.removeIf(e -> Objects.equals(e.newCall, oldCall));
+      handleNewCall(oldCall, true);
+      ambulance.setReassigned(true);
     }
   }
 
-  private static Coordinate findNearestHospital(Incident incident) {
-    return Arrays.stream(Hospital.values())
-        .min(Hospital.closestTo(incident))
-        .map(Hospital::getCoordinate)
-        .orElseThrow();
-  }
-
   private void checkQueue() {
-    var availableAmbulances = (int) ambulances.stream().filter(Ambulance::isAvailable).count();
+    var availableAmbulances = fleetState.availableCount();
 
     while (!callQueue.isEmpty() && availableAmbulances > 0) {
       var newCall = callQueue.poll();
@@ -596,35 +1118,20 @@ public final class Simulation {
       throw new IllegalStateException("Response time should never be negative");
     }
 
-    simulationResults.add(
-        new SimulatedIncidentResult(
-            incident.callReceived(), responseTime, incident.urgencyLevel()));
+    simulationResults.add(incident.callReceived(), responseTime, incident.urgencyLevel());
   }
 
   private void visualizationCallback() {
-    if (onTimeUpdate == null || simulationUpdateInterval == null) {
+    if (snapshots == null) {
       throw new IllegalStateException("Cannot call visualize method in non-visualized simulation");
     }
 
-    try {
-      var internalTimeSinceUpdate = Duration.between(lastInternalUpdate, time);
-      if (internalTimeSinceUpdate.getSeconds() < 120) {
-        return;
-      }
-
-      var timeSinceUpdate = System.currentTimeMillis() - lastVisualUpdate;
-      var updateInterval = Math.max(10, simulationUpdateInterval.longValue());
-      if (timeSinceUpdate < updateInterval) {
-        Thread.sleep(updateInterval - timeSinceUpdate);
-      }
-
-      onTimeUpdate.accept(time, ambulances, callQueue);
-
-      lastInternalUpdate = time;
-      lastVisualUpdate = System.currentTimeMillis();
-
-    } catch (Exception e) {
-      e.printStackTrace();
+    var internalTimeSinceUpdate = Duration.between(lastInternalUpdate, time);
+    if (internalTimeSinceUpdate.getSeconds() < 120) {
+      return;
     }
+
+    snapshots.publish(FleetSnapshot.of(time, ambulances, callQueue));
+    lastInternalUpdate = time;
   }
 }
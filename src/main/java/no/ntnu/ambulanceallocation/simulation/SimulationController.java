@@ -32,10 +32,9 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -44,8 +43,8 @@ import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javafx.animation.AnimationTimer;
 import javafx.animation.Transition;
-import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.concurrent.Task;
 import javafx.fxml.FXML;
@@ -67,7 +66,7 @@ import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportion
 import no.ntnu.ambulanceallocation.optimization.initializer.Random;
 import no.ntnu.ambulanceallocation.optimization.initializer.Uniform;
 import no.ntnu.ambulanceallocation.optimization.initializer.UniformRandom;
-import no.ntnu.ambulanceallocation.simulation.event.NewCall;
+import no.ntnu.ambulanceallocation.simulation.FleetSnapshot.AmbulanceSnapshot;
 import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
 import org.slf4j.Logger;
@@ -86,6 +85,9 @@ public class SimulationController {
   /** default zoom value. */
   private static final int ZOOM_DEFAULT = 11;
 
+  /** snapshots kept for playback, a week of simulation at one snapshot per two minutes. */
+  private static final int SNAPSHOT_BUFFER_SIZE = 8192;
+
   private final Coordinate center = new Coordinate(59.929671, 10.738381);
   private final URL hospitalIcon = getClass().getResource("/images/hospital.png");
   private final URL baseStationIcon = getClass().getResource("/images/base_station.png");
@@ -105,14 +107,11 @@ public class SimulationController {
       Collections.synchronizedList(new ArrayList<>());
   private final List<MapLabel> gridCentroidLabelList =
       Collections.synchronizedList(new ArrayList<>());
-  private final Map<Ambulance, Marker> ambulanceMarkers =
-      Collections.synchronizedMap(new HashMap<>());
-  private final Map<Ambulance, MapLabel> ambulanceLabels =
-      Collections.synchronizedMap(new HashMap<>());
-  private final Map<Ambulance, MapCircle> destinationCircles =
-      Collections.synchronizedMap(new HashMap<>());
-  private final Map<Ambulance, CoordinateLine> destinationLines =
-      Collections.synchronizedMap(new HashMap<>());
+  // keyed by ambulance id and only touched on the JavaFX thread
+  private final Map<Integer, Marker> ambulanceMarkers = new HashMap<>();
+  private final Map<Integer, MapLabel> ambulanceLabels = new HashMap<>();
+  private final Map<Integer, MapCircle> destinationCircles = new HashMap<>();
+  private final Map<Integer, CoordinateLine> destinationLines = new HashMap<>();
   /** params for the WMS server. */
   private final WMSParam wmsParam =
       new WMSParam().setUrl("http://ows.terrestris.de/osm/service?").addParam("layers", "OSM-WMS");
@@ -164,7 +163,6 @@ public class SimulationController {
   @FXML private CheckBox checkShowAmbulanceLabels;
   @FXML private Slider simulationUpdateIntervalSlider;
   private List<MapCircle> incidentCircleList = Collections.synchronizedList(new ArrayList<>());
-  private LocalDateTime currentTimeInternal = LocalDateTime.MIN;
   private Thread simulationThread;
 
   public SimulationController() {
@@ -380,64 +378,55 @@ public class SimulationController {
     }
   }
 
-  private void updateIncidents(Collection<NewCall> callQueue) {
-    Platform.runLater(
-        () -> {
-          incidentCircleList.forEach(mapView::removeMapCircle);
-          incidentCircleList =
-              callQueue.stream()
-                  .map(
-                      call ->
-                          createIncidentCircle(
-                              call.incident, utmToLatLongMap.get(call.incident.getLocation())))
-                  .toList();
-          incidentCircleList.forEach(mapView::addMapCircle);
-        });
+  private void showSnapshot(FleetSnapshot snapshot) {
+    updateAmbulances(snapshot.ambulances());
+    updateIncidents(snapshot.queuedIncidents());
+    currentTime.setText("Current time:\n" + snapshot.time().toString());
+    activeAmbulances.setText("Active ambulances: " + snapshot.activeAmbulances());
   }
 
-  private void updateAmbulances(Collection<Ambulance> ambulanceList) {
-    Platform.runLater(
-        () -> {
-          if (ambulanceMarkers.size() == 0) {
-            updateAmbulancesNoMarkers(ambulanceList);
-          } else {
-
-            synchronized (ambulanceMarkers) {
-              for (var ambulance : ambulanceList) {
-
-                var coordinate = utmToLatLongMap.get(ambulance.getCurrentLocation());
-                var marker = ambulanceMarkers.get(ambulance);
-                var label = ambulanceLabels.get(ambulance);
+  private void updateIncidents(List<Incident> queuedIncidents) {
+    incidentCircleList.forEach(mapView::removeMapCircle);
+    incidentCircleList =
+        queuedIncidents.stream()
+            .map(
+                incident ->
+                    createIncidentCircle(incident, utmToLatLongMap.get(incident.getLocation())))
+            .toList();
+    incidentCircleList.forEach(mapView::addMapCircle);
+  }
 
-                if (ambulance.isAtBaseStation() && ambulance.isOffDuty()) {
-                  marker.setVisible(false);
-                  label.setVisible(false);
-                } else {
-                  marker.setVisible(checkShowAmbulances.isSelected());
-                  label.setVisible(checkShowAmbulanceLabels.isSelected());
-                }
+  private void updateAmbulances(List<AmbulanceSnapshot> ambulanceList) {
+    if (ambulanceMarkers.size() == 0) {
+      updateAmbulancesNoMarkers(ambulanceList);
+      return;
+    }
 
-                if (!marker.getPosition().equals(coordinate)) {
-                  animateMarker(marker, marker.getPosition(), coordinate, label);
-                  marker.setRotation(bearingInDegrees(marker.getPosition(), coordinate) + 90);
-                }
+    for (var ambulance : ambulanceList) {
 
-                if (ambulance.getDestination() != null) {
-                  updateAmbulanceDestinationLine(ambulance, coordinate);
-                }
+      var coordinate = utmToLatLongMap.get(ambulance.currentLocation());
+      var marker = ambulanceMarkers.get(ambulance.id());
+      var label = ambulanceLabels.get(ambulance.id());
 
-                updateAmbulanceDestinationCircle(ambulance);
-              }
-            }
-          }
+      if (ambulance.atBaseStation() && ambulance.offDuty()) {
+        marker.setVisible(false);
+        label.setVisible(false);
+      } else {
+        marker.setVisible(checkShowAmbulances.isSelected());
+        label.setVisible(checkShowAmbulanceLabels.isSelected());
+      }
 
-          currentTime.setText("Current time:\n" + currentTimeInternal.toString());
+      if (!marker.getPosition().equals(coordinate)) {
+        animateMarker(marker, marker.getPosition(), coordinate, label);
+        marker.setRotation(bearingInDegrees(marker.getPosition(), coordinate) + 90);
+      }
 
-          var activeCount =
-              ambulanceList.stream().filter(ambulance -> !ambulance.isOffDuty()).count();
+      if (ambulance.destination() != null) {
+        updateAmbulanceDestinationLine(ambulance, coordinate);
+      }
 
-          activeAmbulances.setText("Active ambulances: " + activeCount);
-        });
+      updateAmbulanceDestinationCircle(ambulance);
+    }
   }
 
   private static int bearingInDegrees(Coordinate src, Coordinate dst) {
@@ -455,56 +444,56 @@ public class SimulationController {
                     + Math.PI)));
   }
 
-  private void updateAmbulanceDestinationLine(Ambulance ambulance, Coordinate currentPosition) {
-    if (destinationLines.containsKey(ambulance)) {
-      mapView.removeCoordinateLine(destinationLines.get(ambulance));
+  private void updateAmbulanceDestinationLine(
+      AmbulanceSnapshot ambulance, Coordinate currentPosition) {
+    if (destinationLines.containsKey(ambulance.id())) {
+      mapView.removeCoordinateLine(destinationLines.get(ambulance.id()));
     }
 
-    var ambulanceDestination = utmToLatLongMap.get(ambulance.getDestination());
+    var ambulanceDestination = utmToLatLongMap.get(ambulance.destination());
 
     Color color;
-    if (!ambulance.isAvailable() && ambulance.isTransportingPatient()) {
+    if (!ambulance.available() && ambulance.transportingPatient()) {
       color = Color.web("#ff0000", 0.9);
-    } else if (ambulance.isAvailable()
-        && ambulance.getDestination() == ambulance.getBaseStation().getCoordinate()) {
+    } else if (ambulance.isReturningToBaseStation()) {
       color = Color.web("#0000ff", 0.9);
-    } else if (ambulance.isReassigned()) {
+    } else if (ambulance.reassigned()) {
       color = Color.web("#ff00ff", 0.9);
     } else {
       color = Color.web("#00ff00", 0.9);
     }
 
     destinationLines.put(
-        ambulance,
+        ambulance.id(),
         new CoordinateLine(ambulanceDestination, currentPosition)
             .setColor(color)
             .setVisible(checkShowPathLines.isSelected()));
-    mapView.addCoordinateLine(destinationLines.get(ambulance));
+    mapView.addCoordinateLine(destinationLines.get(ambulance.id()));
   }
 
-  private void updateAmbulanceDestinationCircle(Ambulance ambulance) {
-    if (destinationCircles.containsKey(ambulance)) {
-      if (ambulance.getDestination() == null
+  private void updateAmbulanceDestinationCircle(AmbulanceSnapshot ambulance) {
+    if (destinationCircles.containsKey(ambulance.id())) {
+      if (ambulance.destination() == null
           || !destinationCircles
-              .get(ambulance)
+              .get(ambulance.id())
               .getCenter()
-              .equals(utmToLatLongMap.get(ambulance.getDestination()))) {
-        mapView.removeMapCircle(destinationCircles.get(ambulance));
-        destinationCircles.remove(ambulance);
+              .equals(utmToLatLongMap.get(ambulance.destination()))) {
+        mapView.removeMapCircle(destinationCircles.get(ambulance.id()));
+        destinationCircles.remove(ambulance.id());
       }
     }
 
-    if (ambulance.getDestination() != null && !destinationCircles.containsKey(ambulance)) {
+    if (ambulance.destination() != null && !destinationCircles.containsKey(ambulance.id())) {
 
-      var destinationCoordinate = utmToLatLongMap.get(ambulance.getDestination());
+      var destinationCoordinate = utmToLatLongMap.get(ambulance.destination());
 
       if (!baseStationCoordinateList.contains(destinationCoordinate)
           && !hospitalCoordinateList.contains(destinationCoordinate)) {
 
         destinationCircles.put(
-            ambulance, createIncidentCircle(ambulance.getIncident(), destinationCoordinate));
+            ambulance.id(), createIncidentCircle(ambulance.incident(), destinationCoordinate));
 
-        mapView.addMapCircle(destinationCircles.get(ambulance));
+        mapView.addMapCircle(destinationCircles.get(ambulance.id()));
       }
     }
   }
@@ -550,27 +539,27 @@ public class SimulationController {
     transition.play();
   }
 
-  private void updateAmbulancesNoMarkers(Collection<Ambulance> ambulanceList) {
+  private void updateAmbulancesNoMarkers(List<AmbulanceSnapshot> ambulanceList) {
     if (ambulanceIcon == null) {
       throw new IllegalStateException("Missing ambulance icon");
     }
 
     for (var ambulance : ambulanceList) {
 
-      var coordinates = utmToLatLongMap.get(ambulance.getCurrentLocation());
+      var coordinates = utmToLatLongMap.get(ambulance.currentLocation());
 
       var marker =
           new Marker(ambulanceIcon, -15, -15)
               .setPosition(coordinates)
               .setVisible(checkShowAmbulances.isSelected());
       var label =
-          new MapLabel(String.valueOf(ambulance.id), 5, 5)
+          new MapLabel(String.valueOf(ambulance.id()), 5, 5)
               .setPosition(coordinates)
               .setCssClass("ambulance-label")
               .setVisible(checkShowAmbulanceLabels.isSelected());
 
-      ambulanceMarkers.put(ambulance, marker);
-      ambulanceLabels.put(ambulance, label);
+      ambulanceMarkers.put(ambulance.id(), marker);
+      ambulanceLabels.put(ambulance.id(), label);
       mapView.addMarker(marker);
       mapView.addLabel(label);
     }
@@ -755,6 +744,7 @@ public class SimulationController {
   @FXML
   private void startSimulation() {
     if (simulationThread == null || !simulationThread.isAlive()) {
+      var snapshots = new SnapshotBuffer(SNAPSHOT_BUFFER_SIZE);
       var task =
           new Task<>() {
             @Override
@@ -772,14 +762,15 @@ public class SimulationController {
 
               var allocation = new Allocation(List.of(dayShiftAllocation, nightShiftAllocation));
 
-              Simulation.visualizedSimulation(
-                  allocation,
-                  (currentTime, ambulanceList, callQueue) -> {
-                    currentTimeInternal = currentTime;
-                    updateAmbulances(ambulanceList);
-                    updateIncidents(callQueue);
-                  },
-                  simulationUpdateIntervalSlider.valueProperty());
+              if (Parameters.REPLAY_TRACE.isEmpty()) {
+                Simulation.visualizedSimulation(allocation, snapshots);
+              } else {
+                TraceReplay.visualize(
+                    Path.of(Parameters.REPLAY_TRACE),
+                    Config.defaultConfig(),
+                    allocation,
+                    snapshots);
+              }
 
               return null;
             }
@@ -787,6 +778,30 @@ public class SimulationController {
       simulationThread = new Thread(task);
       simulationThread.setDaemon(true);
       simulationThread.start();
+
+      // the slider sets how long each snapshot is shown, independent of the simulation speed
+      var playback =
+          new AnimationTimer() {
+            private long lastFrame = 0;
+
+            @Override
+            public void handle(long now) {
+              var updateInterval = Math.max(10, simulationUpdateIntervalSlider.getValue());
+              if (now - lastFrame < updateInterval * 1_000_000) {
+                return;
+              }
+              var snapshot = snapshots.poll();
+              if (snapshot == null) {
+                if (snapshots.isDrained()) {
+                  stop();
+                }
+                return;
+              }
+              lastFrame = now;
+              showSnapshot(snapshot);
+            }
+          };
+      playback.start();
     }
     startSimulationButton.setVisible(false);
   }
@@ -4,107 +4,304 @@ import static java.lang.Math.exp;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
 import no.ntnu.ambulanceallocation.utils.SimulatedIncidentResult;
 
 public class SimulationResults {
 
+  // survival rates looked up by response time in seconds, computed for longer response times
+  private static final int SURVIVAL_RATE_TABLE_SIZE = 4 * 60 * 60;
+  private static final double[][] survivalRates = survivalRateTables();
+
+  // urgency levels by their best survival rate, highest first, for the optimistic fitness
+  private static final UrgencyLevel[] levelsByBestSurvivalRate =
+      Arrays.stream(UrgencyLevel.values())
+          .sorted(Comparator.comparingDouble(u -> -survivalRate(u, 0)))
+          .toArray(UrgencyLevel[]::new);
+
+  // per-incident records, only kept when asked for since fitness only needs the totals
+  private final boolean recordIncidents;
   private final List<SimulatedIncidentResult> simulatedIncidents = new ArrayList<>();
-  private final List<Double> survivalRates = new ArrayList<>();
 
-  private final Map<String, Double> averageResults = new HashMap<>();
+  // running totals per urgency level
+  private final int[] responses = new int[UrgencyLevel.values().length];
+  private final long[] responseTimeSums = new long[UrgencyLevel.values().length];
+  private final double[] survivalRateSums = new double[UrgencyLevel.values().length];
+  private int totalResponses = 0;
+  private long totalResponseTime = 0;
+  private double totalSurvivalRate = 0.0;
+  private final ResponseTimeHistogram responseTimeHistogram = new ResponseTimeHistogram();
+
+  // histograms per urgency level, of fixed size so they are always kept
+  private final ResponseTimeHistogram[] histograms = newHistograms();
+
+  private boolean truncated = false;
+  private double fitnessBound;
+  private Checkpoint checkpoint;
+
+  public SimulationResults(boolean recordIncidents) {
+    this.recordIncidents = recordIncidents;
+  }
+
+  SimulationResults(SimulationResults other) {
+    recordIncidents = other.recordIncidents;
+    simulatedIncidents.addAll(other.simulatedIncidents);
+    System.arraycopy(other.responses, 0, responses, 0, responses.length);
+    System.arraycopy(other.responseTimeSums, 0, responseTimeSums, 0, responseTimeSums.length);
+    System.arraycopy(other.survivalRateSums, 0, survivalRateSums, 0, survivalRateSums.length);
+    totalResponses = other.totalResponses;
+    totalResponseTime = other.totalResponseTime;
+    totalSurvivalRate = other.totalSurvivalRate;
+    for (var level = 0; level < histograms.length; level++) {
+      histograms[level].add(other.histograms[level]);
+    }
+    responseTimeHistogram.add(other.responseTimeHistogram);
+  }
 
   public void add(SimulatedIncidentResult simulatedIncidentResult) {
-    simulatedIncidents.add(simulatedIncidentResult);
+    add(
+        simulatedIncidentResult.callTimestamp(),
+        simulatedIncidentResult.responseTime(),
+        simulatedIncidentResult.urgencyLevel());
+  }
+
+  public void add(LocalDateTime callTimestamp, int responseTime, UrgencyLevel urgencyLevel) {
+    if (recordIncidents) {
+      simulatedIncidents.add(
+          new SimulatedIncidentResult(callTimestamp, responseTime, urgencyLevel));
+    }
+
+    var survivalRate = survivalRate(urgencyLevel, responseTime);
+    var level = urgencyLevel.ordinal();
+    responses[level]++;
+    responseTimeSums[level] += responseTime;
+    survivalRateSums[level] += survivalRate;
+    totalResponses++;
+    totalResponseTime += responseTime;
+    totalSurvivalRate += survivalRate;
+    histograms[level].record(responseTime);
+    responseTimeHistogram.record(responseTime);
+  }
+
+  private static ResponseTimeHistogram[] newHistograms() {
+    var histograms = new ResponseTimeHistogram[UrgencyLevel.values().length];
+    for (var level = 0; level < histograms.length; level++) {
+      histograms[level] = new ResponseTimeHistogram();
+    }
+    return histograms;
+  }
+
+  // the merged results only keep per-incident records if all parts kept them
+  public static SimulationResults merge(List<SimulationResults> results) {
+    var merged =
+        new SimulationResults(results.stream().allMatch(result -> result.recordIncidents));
+    for (var result : results) {
+      if (merged.recordIncidents) {
+        merged.simulatedIncidents.addAll(result.simulatedIncidents);
+      }
+      for (var level = 0; level < merged.responses.length; level++) {
+        merged.responses[level] += result.responses[level];
+        merged.responseTimeSums[level] += result.responseTimeSums[level];
+        merged.survivalRateSums[level] += result.survivalRateSums[level];
+        merged.histograms[level].add(result.histograms[level]);
+      }
+      merged.responseTimeHistogram.add(result.responseTimeHistogram);
+      merged.totalResponses += result.totalResponses;
+      merged.totalResponseTime += result.totalResponseTime;
+      merged.totalSurvivalRate += result.totalSurvivalRate;
+    }
+    return merged;
+  }
+
+  public static double survivalRate(UrgencyLevel urgencyLevel, int responseTime) {
+    if (responseTime >= 0 && responseTime < SURVIVAL_RATE_TABLE_SIZE) {
+      return survivalRates[urgencyLevel.ordinal()][responseTime];
+    }
+    return computeSurvivalRate(urgencyLevel, responseTime);
+  }
+
+  private static double[][] survivalRateTables() {
+    var tables = new double[UrgencyLevel.values().length][SURVIVAL_RATE_TABLE_SIZE];
+    for (var urgencyLevel : UrgencyLevel.values()) {
+      var table = tables[urgencyLevel.ordinal()];
+      for (var responseTime = 0; responseTime < table.length; responseTime++) {
+        table[responseTime] = computeSurvivalRate(urgencyLevel, responseTime);
+      }
+    }
+    return tables;
+  }
+
+  private static double computeSurvivalRate(UrgencyLevel urgencyLevel, int responseTime) {
+    var r = responseTime / 60.0;
+    var u1 = urgencyLevel.getCoefficient1();
+    var u2 = urgencyLevel.getCoefficient2();
+    var survivalRate = 1.0 / (1 + exp(-u1 + u2 * r));
+    if (urgencyLevel.equals(UrgencyLevel.ACUTE)) {
+      return survivalRate * 2;
+    }
+    return survivalRate;
+  }
+
+  // neighbouring allocations can resume from this checkpoint instead of simulating from the start
+  public Checkpoint getCheckpoint() {
+    return checkpoint;
+  }
+
+  void setCheckpoint(Checkpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  public boolean isRecordingIncidents() {
+    return recordIncidents;
+  }
+
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  // without urgency fitness, a percentile above 0 replaces the average response time
+  public double simulatedFitness(boolean useUrgencyFitness, double responseTimePercentile) {
+    if (truncated) {
+      return fitnessBound;
+    }
+    if (useUrgencyFitness) {
+      return 1.0 - averageSurvivalRate();
+    }
+    return responseTimePercentile > 0
+        ? responseTimePercentile(responseTimePercentile)
+        : averageResponseTimes();
+  }
+
+  void truncate(double fitnessBound) {
+    this.truncated = true;
+    this.fitnessBound = fitnessBound;
+  }
+
+  // best fitness still reachable if every remaining incident got an immediate response. It is
+  // asked for after every incident, so it only does constant work on the running totals
+  double optimisticFitness(
+      boolean useUrgencyFitness, double responseTimePercentile, IncidentStream incidents) {
+    var responseCount = totalResponses;
+
+    if (!useUrgencyFitness) {
+      var remaining = 0;
+      for (var urgencyLevel : UrgencyLevel.values()) {
+        remaining += remainingResponses(urgencyLevel, incidents);
+      }
+      if (responseTimePercentile > 0) {
+        return responseCount + remaining == 0
+            ? 0.0
+            : responseTimeHistogram.percentile(responseTimePercentile, remaining);
+      }
+      return responseCount + remaining == 0
+          ? 0.0
+          : totalResponseTime / (double) (responseCount + remaining);
+    }
+
+    // adding every remaining response of an urgency level raises the average survival rate
+    // exactly when its best survival rate is above the current average
+    var survivalSum = totalSurvivalRate;
+    for (var urgencyLevel : levelsByBestSurvivalRate) {
+      var remaining = remainingResponses(urgencyLevel, incidents);
+      var bestSurvivalRate = survivalRate(urgencyLevel, 0);
+      if (remaining > 0 && (responseCount == 0 || bestSurvivalRate > survivalSum / responseCount)) {
+        survivalSum += remaining * bestSurvivalRate;
+        responseCount += remaining;
+      }
+    }
+    return responseCount == 0 ? 0.0 : 1.0 - survivalSum / responseCount;
+  }
+
+  private int remainingResponses(UrgencyLevel urgencyLevel, IncidentStream incidents) {
+    return Math.max(
+        0, incidents.responseTimeIncidents(urgencyLevel) - responses[urgencyLevel.ordinal()]);
   }
 
   public List<LocalDateTime> getCallTimes() {
-    return simulatedIncidents.stream().map(SimulatedIncidentResult::callTimestamp).toList();
+    return records().stream().map(SimulatedIncidentResult::callTimestamp).toList();
   }
 
   public List<Integer> getResponseTimes() {
-    return simulatedIncidents.stream().map(SimulatedIncidentResult::responseTime).toList();
+    return records().stream().map(SimulatedIncidentResult::responseTime).toList();
   }
 
   public List<UrgencyLevel> getUrgencyLevels() {
-    return simulatedIncidents.stream().map(SimulatedIncidentResult::urgencyLevel).toList();
+    return records().stream().map(SimulatedIncidentResult::urgencyLevel).toList();
+  }
+
+  public List<Double> getSurvivalRates() {
+    return records().stream()
+        .map(result -> survivalRate(result.urgencyLevel(), result.responseTime()))
+        .toList();
+  }
+
+  private List<SimulatedIncidentResult> records() {
+    if (!recordIncidents) {
+      throw new IllegalStateException("Per-incident results were not recorded for this simulation");
+    }
+    return simulatedIncidents;
   }
 
   public double averageResponseTimes() {
-    return simulatedIncidents.stream()
-        .map(SimulatedIncidentResult::responseTime)
-        .mapToLong(Integer::valueOf)
-        .average()
-        .orElseThrow();
+    return average(totalResponseTime, totalResponses);
   }
 
   public double averageAcuteResponseTimes() {
-    return simulatedIncidents.stream()
-        .filter(r -> r.urgencyLevel().equals(UrgencyLevel.ACUTE))
-        .map(SimulatedIncidentResult::responseTime)
-        .mapToLong(Integer::valueOf)
-        .average()
-        .orElseThrow();
+    var acute = UrgencyLevel.ACUTE.ordinal();
+    return average(responseTimeSums[acute], responses[acute]);
   }
 
-  public List<Double> getSurvivalRates() {
-    var responseTimes = getResponseTimes();
-    var urgencyLevels = getUrgencyLevels();
-
-    for (int i = 0; i < responseTimes.size(); i++) {
-      var r = responseTimes.get(i) / 60.0;
-      var u1 = urgencyLevels.get(i).getCoefficient1();
-      var u2 = urgencyLevels.get(i).getCoefficient2();
-      var survivalRate = 1.0 / (1 + exp(-u1 + u2 * r));
-      if (urgencyLevels.get(i).equals(UrgencyLevel.ACUTE)) {
-        survivalRates.add(survivalRate * 2);
-      } else {
-        survivalRates.add(survivalRate);
-      }
-    }
-    return survivalRates;
+  public double averageSurvivalRate() {
+    return average(totalSurvivalRate, totalResponses);
   }
 
-  public double averageSurvivalRate() {
-    if (survivalRates.isEmpty()) {
-      getSurvivalRates();
-    }
-    return survivalRates.stream().mapToDouble(r -> r).average().orElseThrow();
+  public ResponseTimeHistogram getResponseTimeHistogram(UrgencyLevel urgencyLevel) {
+    return new ResponseTimeHistogram(histograms[urgencyLevel.ordinal()]);
+  }
+
+  public ResponseTimeHistogram getResponseTimeHistogram() {
+    return new ResponseTimeHistogram(responseTimeHistogram);
+  }
+
+  public int responseTimePercentile(UrgencyLevel urgencyLevel, double percentile) {
+    return histograms[urgencyLevel.ordinal()].percentile(percentile);
+  }
+
+  public int responseTimePercentile(double percentile) {
+    return responseTimeHistogram.percentile(percentile);
   }
 
   public Map<String, Double> createAverageResults() {
-    if (averageResults.isEmpty()) {
-      var urgencyLevels = getUrgencyLevels();
-      var responseTimes = getResponseTimes();
-      var survivalRates = getSurvivalRates();
-      var acuteLen = 0;
-      var acuteResponse = 0;
-      var acuteSurvival = 0.0;
-      var urgentLen = 0;
-      var urgentResponse = 0;
-      var urgentSurvival = 0.0;
-      for (int i = 0; i < urgencyLevels.size(); i++) {
-        var urgency = urgencyLevels.get(i);
-        var responseTime = responseTimes.get(i);
-        var survivalRate = survivalRates.get(i);
-        if (urgency.equals(UrgencyLevel.ACUTE)) {
-          acuteResponse += responseTime;
-          acuteSurvival += survivalRate;
-          acuteLen++;
-        } else {
-          urgentResponse += responseTime;
-          urgentSurvival += survivalRate;
-          urgentLen++;
-        }
+    var acute = UrgencyLevel.ACUTE.ordinal();
+    var urgentLen = 0;
+    var urgentResponse = 0L;
+    var urgentSurvival = 0.0;
+    for (var level = 0; level < responses.length; level++) {
+      if (level != acute) {
+        urgentLen += responses[level];
+        urgentResponse += responseTimeSums[level];
+        urgentSurvival += survivalRateSums[level];
       }
-      averageResults.put("acuteResponse", (double) acuteResponse / acuteLen);
-      averageResults.put("acuteSurvival", acuteSurvival / acuteLen);
-      averageResults.put("urgentResponse", (double) urgentResponse / urgentLen);
-      averageResults.put("urgentSurvival", urgentSurvival / urgentLen);
     }
+
+    var averageResults = new HashMap<String, Double>();
+    averageResults.put("acuteResponse", (double) responseTimeSums[acute] / responses[acute]);
+    averageResults.put("acuteSurvival", survivalRateSums[acute] / responses[acute]);
+    averageResults.put("urgentResponse", (double) urgentResponse / urgentLen);
+    averageResults.put("urgentSurvival", urgentSurvival / urgentLen);
     return averageResults;
   }
+
+  private static double average(double sum, int count) {
+    if (count == 0) {
+      throw new NoSuchElementException("No simulated incidents to average");
+    }
+    return sum / count;
+  }
 }
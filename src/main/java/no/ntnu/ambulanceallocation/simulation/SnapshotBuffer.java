@@ -0,0 +1,61 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/***
+ * Bounded lock-free ring buffer handing fleet snapshots from one simulation thread to one
+ * consumer. Publishing never blocks: when the consumer falls behind by more than the capacity,
+ * the oldest snapshots are overwritten and skipped. Snapshots are immutable, so the consumer
+ * never sees a partially written one.
+ ***/
+public final class SnapshotBuffer {
+
+  private final AtomicReferenceArray<Entry> slots;
+  private final AtomicLong published = new AtomicLong();
+  private final int capacity;
+  private long consumed = 0; // only touched by the consumer
+  private volatile boolean closed = false;
+
+  public SnapshotBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.slots = new AtomicReferenceArray<>(capacity);
+  }
+
+  public void publish(FleetSnapshot snapshot) {
+    var sequence = published.get();
+    slots.set(index(sequence), new Entry(sequence, snapshot));
+    published.set(sequence + 1);
+  }
+
+  // the producer is done, the consumer may still drain what is left
+  public void close() {
+    closed = true;
+  }
+
+  public boolean isDrained() {
+    return closed && consumed >= published.get();
+  }
+
+  public FleetSnapshot poll() {
+    var available = published.get();
+    if (consumed >= available) {
+      return null;
+    }
+    consumed = Math.max(consumed, available - capacity);
+    // a slot is written before the sequence is published, so it holds this snapshot or, if the
+    // producer lapped us since reading the sequence, a newer one
+    var entry = slots.get(index(consumed));
+    consumed = entry.sequence + 1;
+    return entry.snapshot;
+  }
+
+  private int index(long sequence) {
+    return (int) (sequence % capacity);
+  }
+
+  private record Entry(long sequence, FleetSnapshot snapshot) {}
+}
@@ -0,0 +1,99 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import no.ntnu.ambulanceallocation.simulation.event.AbortIncident;
+import no.ntnu.ambulanceallocation.simulation.event.Event;
+import no.ntnu.ambulanceallocation.simulation.event.HospitalDeparture;
+import no.ntnu.ambulanceallocation.simulation.event.LocationUpdate;
+import no.ntnu.ambulanceallocation.simulation.event.NewCall;
+import no.ntnu.ambulanceallocation.simulation.event.PartiallyRespondedCall;
+import no.ntnu.ambulanceallocation.simulation.event.SceneArrival;
+import no.ntnu.ambulanceallocation.simulation.event.SceneDeparture;
+
+/***
+ * Deep copy of the object graph of a running simulation. Every ambulance, partially responded
+ * call and event is copied once, so references between them are preserved in the copy. Plain
+ * calls are immutable and shared with the copy.
+ ***/
+final class StateCopy {
+
+  private final Map<Ambulance, Ambulance> ambulances = new IdentityHashMap<>();
+  private final Map<NewCall, NewCall> newCalls = new IdentityHashMap<>();
+  private final Map<Event, Event> events = new IdentityHashMap<>();
+  private final List<NewCall> copiedNewCalls = new ArrayList<>();
+
+  void map(Ambulance source, Ambulance target) {
+    ambulances.put(source, target);
+    target.copyState(source, this);
+  }
+
+  Ambulance ambulance(Ambulance source) {
+    var target = ambulances.get(source);
+    if (target == null) {
+      throw new IllegalStateException("Ambulance " + source.id + " is not part of the copy");
+    }
+    return target;
+  }
+
+  List<Ambulance> ambulances(List<Ambulance> sources) {
+    var targets = new ArrayList<Ambulance>(sources.size());
+    for (var source : sources) {
+      targets.add(ambulance(source));
+    }
+    return targets;
+  }
+
+  NewCall newCall(NewCall source) {
+    if (source == null) {
+      return null;
+    }
+    var target = newCalls.get(source);
+    if (target == null) {
+      target =
+          source instanceof PartiallyRespondedCall call
+              ? new PartiallyRespondedCall(call, call.getTime())
+              : source;
+      newCalls.put(source, target);
+      copiedNewCalls.add(source);
+    }
+    return target;
+  }
+
+  Event event(Event source) {
+    if (source == null) {
+      return null;
+    }
+    var target = events.get(source);
+    if (target == null) {
+      target =
+          switch (source) {
+            case NewCall call -> newCall(call);
+            case AbortIncident e -> new AbortIncident(
+                e.getTime(), newCall(e.newCall), ambulances(e.getAmbulances()));
+            case SceneArrival e -> new SceneArrival(
+                e.getTime(), newCall(e.newCall), ambulance(e.ambulance), e.departureTime);
+            case SceneDeparture e -> new SceneDeparture(
+                e.getTime(), newCall(e.newCall), ambulances(e.getAmbulances()));
+            case HospitalDeparture e -> new HospitalDeparture(
+                e.getTime(), ambulance(e.ambulance), newCall(e.newCall));
+            case LocationUpdate e -> new LocationUpdate(e.getTime(), ambulance(e.ambulance));
+          };
+      events.put(source, target);
+    }
+    return target;
+  }
+
+  // takes over the latest event of every copied call
+  void finish(Map<NewCall, Event> sourceCallEvents, Map<NewCall, Event> targetCallEvents) {
+    for (var i = 0; i < copiedNewCalls.size(); i++) {
+      var source = copiedNewCalls.get(i);
+      var callEvent = sourceCallEvents.get(source);
+      if (callEvent != null) {
+        targetCallEvents.put(newCalls.get(source), event(callEvent));
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.simulation.FleetSnapshot.AmbulanceSnapshot;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.trace.TraceReader;
+import no.ntnu.ambulanceallocation.simulation.trace.TraceRecord;
+
+/***
+ * Drives the visualization from a trace instead of a running simulation. The fleet is rebuilt
+ * from the trace entries, so the snapshots show where each ambulance was and which incident it
+ * served. Shift changes are not traced, so an idle ambulance at its base station is shown off
+ * duty when its station has fewer ambulances in the current shift.
+ ***/
+public final class TraceReplay {
+
+  private static final int SNAPSHOT_INTERVAL = 120; // seconds of simulated time between snapshots
+
+  private final IncidentStream incidents;
+  private final Map<Integer, ReplayedAmbulance> ambulances = new LinkedHashMap<>();
+  private final Map<Incident, Integer> dispatched = new HashMap<>();
+  private final Set<Incident> queuedIncidents = new LinkedHashSet<>();
+  private final Allocation allocation;
+  private LocalDateTime lastSnapshot = LocalDateTime.MIN;
+
+  private TraceReplay(Config config, Allocation allocation) {
+    this.allocation = allocation;
+    this.incidents = IncidentStream.of(config);
+
+    // numbered per base station like the simulation numbers its fleet
+    var id = 1;
+    var counts = allocation.counts();
+    for (var baseStation : BaseStation.values()) {
+      var size = Math.max(counts.get(0, baseStation.getId()), counts.get(1, baseStation.getId()));
+      for (var index = 0; index < size; index++, id++) {
+        ambulances.put(id, new ReplayedAmbulance(id, baseStation, index));
+      }
+    }
+  }
+
+  /***
+   * Publishes snapshots of the traced run of the allocation, at the same pace as a visualized
+   * simulation, and closes the buffer when the trace ends.
+   ***/
+  public static void visualize(
+      Path trace, Config config, Allocation allocation, SnapshotBuffer snapshots) {
+    try {
+      var replay = new TraceReplay(config, allocation);
+      TraceReader.replay(trace, record -> replay.apply(record, snapshots));
+    } finally {
+      snapshots.close();
+    }
+  }
+
+  private void apply(TraceRecord record, SnapshotBuffer snapshots) {
+    var incident = record.incidentId() < 0 ? null : incidents.incident(record.incidentId());
+    var ambulance = ambulances.get(record.ambulanceId());
+    if (ambulance != null) {
+      ambulance.location = new Coordinate(record.location());
+    }
+
+    switch (record.type()) {
+      case NEW_CALL, PARTIALLY_RESPONDED_CALL -> {
+        // the dispatch of a call is traced just before the call itself
+        if (dispatched.getOrDefault(incident, 0) < incident.getDemand()) {
+          queuedIncidents.add(incident);
+        } else {
+          queuedIncidents.remove(incident);
+        }
+      }
+      case DISPATCH -> {
+        dispatched.merge(incident, record.candidates().length, Integer::sum);
+        for (var candidate : record.candidates()) {
+          ambulances.get(candidate).dispatch(incident);
+        }
+      }
+      case SCENE_ARRIVAL -> ambulance.destination = incident.getLocation();
+      case HOSPITAL_TRANSPORT -> {
+        ambulance.transportingPatient = true;
+        ambulance.destination = incidents.nearestHospital(incident);
+      }
+      case SCENE_DEPARTURE -> ambulance.complete();
+      case ABORT_INCIDENT -> {
+        if (ambulance.nextIncident == incident) {
+          ambulance.nextIncident = null;
+        } else if (ambulance.incident == incident) {
+          ambulance.complete();
+        }
+      }
+      case HOSPITAL_DEPARTURE -> ambulance.complete();
+      case LOCATION_UPDATE -> {}
+    }
+
+    if (Duration.between(lastSnapshot, record.time()).getSeconds() >= SNAPSHOT_INTERVAL) {
+      snapshots.publish(snapshot(record.time()));
+      lastSnapshot = record.time();
+    }
+  }
+
+  private FleetSnapshot snapshot(LocalDateTime time) {
+    var shift = ShiftType.get(time).ordinal();
+    var counts = allocation.counts();
+    var ambulanceSnapshots = new ArrayList<AmbulanceSnapshot>(ambulances.size());
+    for (var ambulance : ambulances.values()) {
+      var baseStation = ambulance.baseStation;
+      var atBaseStation = ambulance.location.id() == baseStation.getCoordinate().id();
+      var offDuty =
+          ambulance.incident == null
+              && atBaseStation
+              && ambulance.index >= counts.get(shift, baseStation.getId());
+      ambulanceSnapshots.add(
+          new AmbulanceSnapshot(
+              ambulance.id,
+              baseStation,
+              ambulance.location,
+              ambulance.destination,
+              ambulance.incident,
+              offDuty,
+              atBaseStation,
+              ambulance.incident == null,
+              ambulance.transportingPatient,
+              false));
+    }
+    return new FleetSnapshot(time, ambulanceSnapshots, List.copyOf(queuedIncidents));
+  }
+
+  private static final class ReplayedAmbulance {
+
+    private final int id;
+    private final BaseStation baseStation;
+    private final int index; // position among the ambulances of its base station
+    private Coordinate location;
+    private Coordinate destination;
+    private Incident incident;
+    private Incident nextIncident; // queued while transporting a patient
+    private boolean transportingPatient = false;
+
+    private ReplayedAmbulance(int id, BaseStation baseStation, int index) {
+      this.id = id;
+      this.baseStation = baseStation;
+      this.index = index;
+      this.location = baseStation.getCoordinate();
+      this.destination = baseStation.getCoordinate();
+    }
+
+    private void dispatch(Incident newIncident) {
+      if (transportingPatient) {
+        nextIncident = newIncident;
+        return;
+      }
+      incident = newIncident;
+      destination = newIncident.getLocation();
+    }
+
+    // done with the incident, on to the next one or back to the base station
+    private void complete() {
+      transportingPatient = false;
+      incident = nextIncident;
+      nextIncident = null;
+      destination = incident == null ? baseStation.getCoordinate() : incident.getLocation();
+    }
+  }
+}
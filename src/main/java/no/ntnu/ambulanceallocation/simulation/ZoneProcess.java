@@ -0,0 +1,57 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.time.LocalDateTime;
+import no.ntnu.ambulanceallocation.simulation.event.NewCall;
+import no.ntnu.ambulanceallocation.simulation.timewarp.LogicalProcess;
+import no.ntnu.ambulanceallocation.simulation.timewarp.Message;
+import no.ntnu.ambulanceallocation.simulation.timewarp.Outbox;
+
+final class ZoneProcess implements LogicalProcess<NewCall, Simulation> {
+
+  private final Simulation simulation;
+  private final int overflowZone;
+  private SimulationResults simulationResults;
+
+  ZoneProcess(Simulation simulation, int overflowZone) {
+    this.simulation = simulation;
+    this.overflowZone = overflowZone;
+  }
+
+  SimulationResults getSimulationResults() {
+    return simulationResults;
+  }
+
+  @Override
+  public LocalDateTime nextLocalTime() {
+    return simulation.nextIncidentTime();
+  }
+
+  @Override
+  public void processLocal(Outbox<NewCall> outbox) {
+    if (overflowZone < 0) {
+      simulation.step(null);
+    } else {
+      simulation.step(newCall -> outbox.send(overflowZone, newCall));
+    }
+  }
+
+  @Override
+  public void processMessage(Message<NewCall> message, Outbox<NewCall> outbox) {
+    simulation.receive(message.payload());
+  }
+
+  @Override
+  public Simulation saveState() {
+    return simulation.freeze();
+  }
+
+  @Override
+  public void restoreState(Simulation state) {
+    simulation.restore(state);
+  }
+
+  @Override
+  public void finish() {
+    simulationResults = simulation.drain();
+  }
+}
@@ -0,0 +1,205 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.incident.Incident;
+import no.ntnu.ambulanceallocation.simulation.timewarp.TimeWarpKernel;
+
+/***
+ * Simulation split into zones that are simulated optimistically in parallel, each with its own
+ * event queue. A zone dispatches only its own ambulances, and hands an incident over to its
+ * overflow zone when none of them are available. With a single zone the results are identical
+ * to those of the serial simulation. With more zones they are not, since an ambulance never
+ * answers a call of another zone that it would have reached first, so the zoned simulation is
+ * only meant for studying the parallel speed-up and is not used to evaluate allocations.
+ ***/
+public final class ZonedSimulation {
+
+  private static final int SAVE_INTERVAL = 32; // inputs between saved states
+  private static final int MAX_ITERATIONS = 100;
+
+  private final Config config;
+  private final List<Set<BaseStation>> zoneBaseStations;
+  private final List<Predicate<Incident>> zoneIncidents;
+  private final int[] overflowZones;
+  private TimeWarpKernel.Statistics statistics;
+
+  private ZonedSimulation(
+      Config config,
+      List<Set<BaseStation>> zoneBaseStations,
+      List<Predicate<Incident>> zoneIncidents,
+      int[] overflowZones) {
+    this.config = config;
+    this.zoneBaseStations = zoneBaseStations;
+    this.zoneIncidents = zoneIncidents;
+    this.overflowZones = overflowZones;
+  }
+
+  /***
+   * Partitions the base stations into geographic zones with k-means over their coordinates.
+   * Incidents belong to the zone of the closest base station, and each zone overflows into the
+   * zone with the closest centre.
+   ***/
+  public static ZonedSimulation partitioned(Config config, int zones) {
+    var baseStations = BaseStation.values();
+    var zoneCount = Math.min(zones, baseStations.length);
+
+    // seed with the most populated station, then repeatedly the station farthest from all seeds
+    var centres = new ArrayList<double[]>();
+    var first =
+        Arrays.stream(baseStations)
+            .max(Comparator.comparing(BaseStation::getPopulation))
+            .orElseThrow();
+    centres.add(centre(first.getCoordinate()));
+    while (centres.size() < zoneCount) {
+      var farthest =
+          Arrays.stream(baseStations)
+              .max(Comparator.comparing(station -> distance(station.getCoordinate(), centres)))
+              .orElseThrow();
+      centres.add(centre(farthest.getCoordinate()));
+    }
+
+    var assignment = new int[baseStations.length];
+    for (var iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+      var changed = false;
+      for (var baseStation : baseStations) {
+        var zone = closest(baseStation.getCoordinate(), centres);
+        if (zone != assignment[baseStation.ordinal()]) {
+          assignment[baseStation.ordinal()] = zone;
+          changed = true;
+        }
+      }
+      for (var zone = 0; zone < zoneCount; zone++) {
+        var x = 0.0;
+        var y = 0.0;
+        var n = 0;
+        for (var baseStation : baseStations) {
+          if (assignment[baseStation.ordinal()] == zone) {
+            x += baseStation.getCoordinate().x();
+            y += baseStation.getCoordinate().y();
+            n++;
+          }
+        }
+        if (n > 0) {
+          centres.set(zone, new double[] {x / n, y / n});
+        }
+      }
+      if (!changed && iteration > 0) {
+        break;
+      }
+    }
+
+    var zoneBaseStations = new ArrayList<Set<BaseStation>>();
+    var zoneIncidents = new ArrayList<Predicate<Incident>>();
+    var overflowZones = new int[zoneCount];
+    for (var zone = 0; zone < zoneCount; zone++) {
+      var stations = EnumSet.noneOf(BaseStation.class);
+      for (var baseStation : baseStations) {
+        if (assignment[baseStation.ordinal()] == zone) {
+          stations.add(baseStation);
+        }
+      }
+      zoneBaseStations.add(stations);
+
+      var zoneIndex = zone;
+      zoneIncidents.add(
+          incident ->
+              assignment[closestBaseStation(incident.getLocation()).ordinal()] == zoneIndex);
+
+      var others = new ArrayList<>(centres);
+      others.set(zone, new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY});
+      overflowZones[zone] = zoneCount == 1 ? -1 : closest(centres.get(zone), others);
+    }
+
+    return new ZonedSimulation(config, zoneBaseStations, zoneIncidents, overflowZones);
+  }
+
+  /***
+   * Synthetic service area made of copies of the whole region, each receiving every incident of
+   * the config. Every region overflows into the next one, so the regions form a ring.
+   ***/
+  public static ZonedSimulation regions(Config config, int regions) {
+    var zoneBaseStations = new ArrayList<Set<BaseStation>>();
+    var zoneIncidents = new ArrayList<Predicate<Incident>>();
+    var overflowZones = new int[regions];
+    for (var region = 0; region < regions; region++) {
+      zoneBaseStations.add(EnumSet.allOf(BaseStation.class));
+      zoneIncidents.add(null);
+      overflowZones[region] = regions == 1 ? -1 : (region + 1) % regions;
+    }
+    return new ZonedSimulation(config, zoneBaseStations, zoneIncidents, overflowZones);
+  }
+
+  public int size() {
+    return zoneBaseStations.size();
+  }
+
+  public Set<BaseStation> getBaseStations(int zone) {
+    return zoneBaseStations.get(zone);
+  }
+
+  public TimeWarpKernel.Statistics getStatistics() {
+    return statistics;
+  }
+
+  /***
+   * Simulates the allocation in every zone. Zones run ahead of the slowest zone by at most the
+   * window before exchanging the incidents they handed over.
+   ***/
+  public SimulationResults simulate(final Allocation allocation, final Duration window) {
+    var zones = new ArrayList<ZoneProcess>();
+    var firstAmbulanceId = 1;
+    for (var zone = 0; zone < size(); zone++) {
+      var simulation =
+          new Simulation(config, 0, zoneBaseStations.get(zone), zoneIncidents.get(zone));
+      simulation.numberAmbulancesFrom(firstAmbulanceId);
+      simulation.start(allocation);
+      firstAmbulanceId += simulation.fleetSize();
+      zones.add(new ZoneProcess(simulation, overflowZones[zone]));
+    }
+
+    statistics = new TimeWarpKernel<>(zones, window, SAVE_INTERVAL, true).run();
+
+    return SimulationResults.merge(zones.stream().map(ZoneProcess::getSimulationResults).toList());
+  }
+
+  private static double[] centre(Coordinate coordinate) {
+    return new double[] {coordinate.x(), coordinate.y()};
+  }
+
+  private static double distance(Coordinate coordinate, List<double[]> centres) {
+    return centres.stream()
+        .mapToDouble(centre -> Math.hypot(coordinate.x() - centre[0], coordinate.y() - centre[1]))
+        .min()
+        .orElse(Double.POSITIVE_INFINITY);
+  }
+
+  private static int closest(Coordinate coordinate, List<double[]> centres) {
+    return closest(centre(coordinate), centres);
+  }
+
+  private static int closest(double[] point, List<double[]> centres) {
+    var best = 0;
+    for (var i = 1; i < centres.size(); i++) {
+      if (Math.hypot(point[0] - centres.get(i)[0], point[1] - centres.get(i)[1])
+          < Math.hypot(point[0] - centres.get(best)[0], point[1] - centres.get(best)[1])) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  private static BaseStation closestBaseStation(Coordinate location) {
+    return Arrays.stream(BaseStation.values())
+        .min(Comparator.comparing(station -> station.getCoordinate().euclideanDistanceTo(location)))
+        .orElseThrow();
+  }
+}
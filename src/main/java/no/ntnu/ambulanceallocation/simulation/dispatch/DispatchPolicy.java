@@ -2,14 +2,13 @@ package no.ntnu.ambulanceallocation.simulation.dispatch;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import no.ntnu.ambulanceallocation.simulation.Ambulance;
-import no.ntnu.ambulanceallocation.simulation.BaseStation;
 import no.ntnu.ambulanceallocation.simulation.Config;
-import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
-import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
+import no.ntnu.ambulanceallocation.simulation.FleetState;
+import no.ntnu.ambulanceallocation.simulation.grid.Isochrones;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
 import no.ntnu.ambulanceallocation.simulation.incident.IncidentDistribution;
+import no.ntnu.ambulanceallocation.simulation.incident.NeighbourhoodDemand;
 import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
 
 public enum DispatchPolicy {
@@ -20,7 +19,7 @@ public enum DispatchPolicy {
         List<Ambulance> otherAmbulances,
         Incident incident,
         Integer demand,
-        Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+        FleetState fleetState,
         LocalDateTime currentTime,
         Config config,
         int factor) {
@@ -42,7 +41,7 @@ public enum DispatchPolicy {
         List<Ambulance> otherAmbulances,
         Incident incident,
         Integer demand,
-        Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+        FleetState fleetState,
         LocalDateTime currentTime,
         Config config,
         int factor) {
@@ -64,7 +63,7 @@ public enum DispatchPolicy {
         List<Ambulance> otherAmbulances,
         Incident incident,
         Integer demand,
-        Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+        FleetState fleetState,
         LocalDateTime currentTime,
         Config config,
         int factor) {
@@ -85,7 +84,7 @@ public enum DispatchPolicy {
         List<Ambulance> otherAmbulances,
         Incident incident,
         Integer demand,
-        Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+        FleetState fleetState,
         LocalDateTime currentTime,
         Config config,
         int factor) {
@@ -95,11 +94,7 @@ public enum DispatchPolicy {
         return;
       }
 
-      var numAvailable =
-          (int)
-              baseStationAmbulances.get(ambulance.getBaseStation()).stream()
-                  .filter(Ambulance::isAvailable)
-                  .count();
+      var numAvailable = fleetState.availableAt(ambulance.getBaseStation());
 
       var penalty =
           switch (Math.max(0, numAvailable - demand)) {
@@ -119,7 +114,7 @@ public enum DispatchPolicy {
         List<Ambulance> otherAmbulances,
         Incident incident,
         Integer demand,
-        Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+        FleetState fleetState,
         LocalDateTime currentTime,
         Config config,
         int factor) {
@@ -131,18 +126,22 @@ public enum DispatchPolicy {
 
       var hospitalLocation = ambulance.getHospitalLocation();
 
+      // available ambulances are counted by the fleet state, the candidates after them are the
+      // few reassignable or queueable ambulances
       var closeAmbulances =
-          (int)
-              otherAmbulances.stream()
-                  .mapToLong(
-                      a -> {
-                        if (ambulance.isTransportingPatient()) {
-                          return a.getCurrentLocation().timeTo(hospitalLocation);
-                        }
-                        return ambulance.getTimeTo(a);
-                      })
-                  .filter(distance -> distance < 7.0 * 60)
-                  .count();
+          ambulance.isTransportingPatient()
+              ? fleetState.availableReaching(hospitalLocation)
+              : fleetState.availableReachableFrom(ambulance.getCurrentLocation());
+      for (var i = fleetState.availableCount(); i < otherAmbulances.size(); i++) {
+        var other = otherAmbulances.get(i);
+        var time =
+            ambulance.isTransportingPatient()
+                ? other.getCurrentLocation().timeTo(hospitalLocation)
+                : ambulance.getTimeTo(other);
+        if (time < Isochrones.COVERAGE_TIME) {
+          closeAmbulances++;
+        }
+      }
 
       var penalty =
           switch (Math.max(0, closeAmbulances - demand)) {
@@ -162,7 +161,7 @@ public enum DispatchPolicy {
         List<Ambulance> otherAmbulances,
         Incident incident,
         Integer demand,
-        Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+        FleetState fleetState,
         LocalDateTime currentTime,
         Config config,
         int factor) {
@@ -184,10 +183,7 @@ public enum DispatchPolicy {
         predictedDemand =
             config.INCIDENT_DISTRIBUTION().getPredictedDemand(baseStation, arrivalTime);
 
-        areaAmbulanceCount =
-            baseStationAmbulances.get(ambulance.getBaseStation()).stream()
-                .filter(Ambulance::isAvailable)
-                .count();
+        areaAmbulanceCount = fleetState.availableAt(ambulance.getBaseStation());
       } else {
         var location = ambulance.getCurrentLocation();
         if (ambulance.isTransportingPatient()) {
@@ -195,20 +191,10 @@ public enum DispatchPolicy {
           location = ambulance.getHospitalLocation();
         }
 
-        // total demand in neighbourhood
-        var neighbours = DistanceIO.getNeighbours(location);
-        for (var neighbour : neighbours) {
-          var neighbourDemand =
-              config.INCIDENT_DISTRIBUTION().getPredictedDemand(neighbour, arrivalTime);
-          predictedDemand += neighbourDemand;
-        }
-
-        areaAmbulanceCount =
-            otherAmbulances.stream()
-                .filter(Ambulance::isAvailable)
-                .map(a -> new Coordinate(a.getCurrentLocation().id()))
-                .filter(neighbours::contains)
-                .count();
+        // total demand and available ambulances in neighbourhood
+        var neighbourhood = NeighbourhoodDemand.neighbourhood(location);
+        predictedDemand = NeighbourhoodDemand.get(neighbourhood, arrivalTime);
+        areaAmbulanceCount = fleetState.availableInNeighbourhood(neighbourhood);
       }
 
       var availableAmbulanceCount = Math.max(0L, areaAmbulanceCount - demand);
@@ -258,7 +244,7 @@ public enum DispatchPolicy {
       List<Ambulance> otherAmbulances,
       Incident incident,
       Integer demand,
-      Map<BaseStation, List<Ambulance>> baseStationAmbulances,
+      FleetState fleetState,
       LocalDateTime currentTime,
       Config config,
       int factor);
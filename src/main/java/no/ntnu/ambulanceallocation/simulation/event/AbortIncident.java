@@ -14,7 +14,6 @@ public final class AbortIncident extends Event {
     super(time, newCall);
     this.incident = newCall.incident;
     this.ambulances = ambulances;
-    newCall.setNextEvent(this);
   }
 
   public List<Ambulance> getAmbulances() {
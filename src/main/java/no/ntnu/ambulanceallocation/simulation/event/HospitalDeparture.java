@@ -10,6 +10,5 @@ public final class HospitalDeparture extends Event {
   public HospitalDeparture(LocalDateTime time, Ambulance ambulance, NewCall newCall) {
     super(time, newCall);
     this.ambulance = ambulance;
-    newCall.setNextEvent(this);
   }
 }
@@ -3,11 +3,15 @@ package no.ntnu.ambulanceallocation.simulation.event;
 import java.time.LocalDateTime;
 import no.ntnu.ambulanceallocation.simulation.incident.Incident;
 
+/***
+ * A call for an incident. Plain calls are immutable, so the calls of the incident stream are
+ * shared by every simulation of the same config. The latest event of a call is kept by each
+ * simulation instead.
+ ***/
 public sealed class NewCall extends Event permits PartiallyRespondedCall {
 
   public final Incident incident;
   public final boolean providesResponseTime;
-  public Event nextEvent;
 
   public NewCall(Incident incident, boolean providesResponseTime) {
     super(incident.callReceived(), null);
@@ -29,14 +33,6 @@ public sealed class NewCall extends Event permits PartiallyRespondedCall {
     return incident.nonTransportingVehicles();
   }
 
-  public void setNextEvent(Event event) {
-    nextEvent = event;
-  }
-
-  public Event getNextEvent() {
-    return nextEvent;
-  }
-
   @Override
   public String toString() {
     return String.format(
@@ -16,6 +16,5 @@ public final class SceneArrival extends Event {
     this.incident = newCall.incident;
     this.ambulance = ambulance;
     this.departureTime = departureTime;
-    newCall.setNextEvent(this);
   }
 }
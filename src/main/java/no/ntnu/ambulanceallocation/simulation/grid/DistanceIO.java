@@ -26,6 +26,7 @@ public final class DistanceIO {
       new File("src/main/resources/data/od_paths.json").getAbsolutePath();
   public static final String neighboursFilePath =
       new File("src/main/resources/data/closest_neighbours.json").getAbsolutePath();
+  static final double DEFAULT_TRAVEL_TIME = 60.0; // used when a route is missing
   private static int TRAVEL_TIME_INTERVAL; // Interval time for od_paths route coordinates
   public static final Set<Coordinate> uniqueGridCoordinates = new HashSet<>();
 
@@ -53,11 +54,11 @@ public final class DistanceIO {
 
   public static double getDistance(Coordinate from, Coordinate to) {
     if (from == to) {
-      return 60.0;
+      return DEFAULT_TRAVEL_TIME;
     }
     if (!routes.containsKey(new Tuple<>(from, to))) {
       logger.info("Failed to find distance from {} to {}", from, to);
-      return 60.0;
+      return DEFAULT_TRAVEL_TIME;
     }
     return routes.get(new Tuple<>(from, to)).time();
   }
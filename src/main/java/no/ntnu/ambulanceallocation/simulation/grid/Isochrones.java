@@ -0,0 +1,82 @@
+package no.ntnu.ambulanceallocation.simulation.grid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import no.ntnu.ambulanceallocation.utils.Tuple;
+
+/***
+ * Cells within the coverage time of each other, precomputed once from the travel times. Every
+ * coordinate that appears in a route gets a cell index. Pairs without a route count as close,
+ * like the default travel time of DistanceIO does.
+ ***/
+public final class Isochrones {
+
+  public static final int COVERAGE_TIME = 7 * 60;
+
+  private static final Map<Coordinate, Integer> cells = new HashMap<>();
+  private static final int[][] reachableFrom;
+  private static final int[][] reachingTo;
+
+  static {
+    for (var route : DistanceIO.routes.keySet()) {
+      cells.putIfAbsent(route.first(), cells.size());
+      cells.putIfAbsent(route.second(), cells.size());
+    }
+    var coordinates = new Coordinate[cells.size()];
+    cells.forEach((coordinate, cell) -> coordinates[cell] = coordinate);
+
+    var size = coordinates.length;
+    reachableFrom = new int[size][];
+    var reachingCounts = new int[size];
+    var buffer = new int[size];
+    for (var from = 0; from < size; from++) {
+      var count = 0;
+      for (var to = 0; to < size; to++) {
+        if (from == to || isClose(coordinates[from], coordinates[to])) {
+          buffer[count++] = to;
+          reachingCounts[to]++;
+        }
+      }
+      reachableFrom[from] = Arrays.copyOf(buffer, count);
+    }
+
+    reachingTo = new int[size][];
+    for (var to = 0; to < size; to++) {
+      reachingTo[to] = new int[reachingCounts[to]];
+      reachingCounts[to] = 0;
+    }
+    for (var from = 0; from < size; from++) {
+      for (var to : reachableFrom[from]) {
+        reachingTo[to][reachingCounts[to]++] = from;
+      }
+    }
+  }
+
+  private Isochrones() {}
+
+  private static boolean isClose(Coordinate from, Coordinate to) {
+    var route = DistanceIO.routes.get(new Tuple<>(from, to));
+    var time = route == null ? DistanceIO.DEFAULT_TRAVEL_TIME : route.time();
+    return Math.round(time) < COVERAGE_TIME;
+  }
+
+  public static int size() {
+    return reachableFrom.length;
+  }
+
+  // -1 for coordinates without routes, which are close to everything
+  public static int cell(Coordinate coordinate) {
+    return cells.getOrDefault(coordinate, -1);
+  }
+
+  // cells that can be reached from the cell within the coverage time
+  public static int[] reachableFrom(int cell) {
+    return reachableFrom[cell];
+  }
+
+  // cells the cell can be reached from within the coverage time
+  public static int[] reachingTo(int cell) {
+    return reachingTo[cell];
+  }
+}
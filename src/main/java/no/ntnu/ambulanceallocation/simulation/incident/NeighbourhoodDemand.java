@@ -0,0 +1,90 @@
+package no.ntnu.ambulanceallocation.simulation.incident;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import no.ntnu.ambulanceallocation.simulation.grid.Coordinate;
+import no.ntnu.ambulanceallocation.simulation.grid.DistanceIO;
+
+/***
+ * Total predicted grid demand of the neighbourhood of each location, precomputed per month,
+ * weekday and hour from the grid distribution. Also indexes which neighbourhoods each grid cell
+ * belongs to, so available ambulances can be counted per neighbourhood.
+ ***/
+public final class NeighbourhoodDemand {
+
+  private static final int SLOTS = 12 * 7 * 24;
+  private static final int[] NONE = new int[0];
+
+  private static final Map<Coordinate, Integer> neighbourhoods = new HashMap<>();
+  private static final Map<Coordinate, int[]> containing = new HashMap<>();
+  private static final double[][] demand;
+
+  static {
+    // the grid distribution loads the neighbours
+    var distribution = IncidentIO.gridDistribution;
+    var members = new HashMap<Coordinate, List<Integer>>();
+    var sums = new ArrayList<double[]>();
+    for (var location : DistanceIO.neighbours.keySet()) {
+      var neighbourhood = neighbourhoods.size();
+      neighbourhoods.put(location, neighbourhood);
+
+      var sum = new double[SLOTS];
+      for (var neighbour : DistanceIO.getNeighbours(location)) {
+        members.computeIfAbsent(neighbour, n -> new ArrayList<>()).add(neighbourhood);
+        addDemand(sum, distribution.get(neighbour));
+      }
+      sums.add(sum);
+    }
+    members.forEach(
+        (cell, cellNeighbourhoods) ->
+            containing.put(
+                cell, cellNeighbourhoods.stream().mapToInt(Integer::intValue).toArray()));
+    demand = sums.toArray(double[][]::new);
+  }
+
+  private NeighbourhoodDemand() {}
+
+  // missing months, weekdays or hours add no demand
+  private static void addDemand(
+      double[] sum, Map<Integer, Map<Integer, Map<Integer, Double>>> cellDistribution) {
+    if (cellDistribution == null) {
+      return;
+    }
+    cellDistribution.forEach(
+        (month, weekdays) ->
+            weekdays.forEach(
+                (weekday, hours) ->
+                    hours.forEach(
+                        (hour, value) -> sum[slot(month, weekday, hour)] += value)));
+  }
+
+  private static int slot(int month, int weekday, int hour) {
+    return ((month - 1) * 7 + weekday - 1) * 24 + hour;
+  }
+
+  public static int size() {
+    return demand.length;
+  }
+
+  // -1 for locations without neighbours
+  public static int neighbourhood(Coordinate location) {
+    return neighbourhoods.getOrDefault(location, -1);
+  }
+
+  // neighbourhoods the grid cell is a neighbour in
+  public static int[] containing(Coordinate cell) {
+    return containing.getOrDefault(cell, NONE);
+  }
+
+  public static double get(int neighbourhood, LocalDateTime time) {
+    if (neighbourhood < 0) {
+      return 0.0;
+    }
+    var slot =
+        slot(time.getMonth().getValue(), time.getDayOfWeek().getValue(), time.getHour());
+    return demand[neighbourhood][slot];
+  }
+}
@@ -0,0 +1,25 @@
+package no.ntnu.ambulanceallocation.simulation.timewarp;
+
+import java.time.LocalDateTime;
+
+/***
+ * One partition of an optimistically executed simulation. A logical process consumes its own
+ * timestamped local inputs and the messages sent to it by other processes. The kernel may roll
+ * it back to any state it has saved, so processing an input must only depend on that state.
+ ***/
+public interface LogicalProcess<T, S> {
+
+  // time of the next local input, or null when there are none left
+  LocalDateTime nextLocalTime();
+
+  void processLocal(Outbox<T> outbox);
+
+  void processMessage(Message<T> message, Outbox<T> outbox);
+
+  S saveState();
+
+  void restoreState(S state);
+
+  // called once no process can send any more messages
+  void finish();
+}
@@ -0,0 +1,23 @@
+package no.ntnu.ambulanceallocation.simulation.timewarp;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import javax.annotation.Nonnull;
+
+/***
+ * Timestamped message between two logical processes. Messages are ordered by time, and
+ * messages with equal time by sender and the order in which they were sent.
+ ***/
+public record Message<T>(LocalDateTime time, int source, int target, long sequence, T payload)
+    implements Comparable<Message<T>> {
+
+  private static final Comparator<Message<?>> order =
+      Comparator.<Message<?>, LocalDateTime>comparing(Message::time)
+          .thenComparingInt(Message::source)
+          .thenComparingLong(Message::sequence);
+
+  @Override
+  public int compareTo(@Nonnull Message<T> other) {
+    return order.compare(this, other);
+  }
+}
@@ -0,0 +1,8 @@
+package no.ntnu.ambulanceallocation.simulation.timewarp;
+
+@FunctionalInterface
+public interface Outbox<T> {
+
+  // the message is stamped with the time of the input being processed
+  void send(int target, T payload);
+}
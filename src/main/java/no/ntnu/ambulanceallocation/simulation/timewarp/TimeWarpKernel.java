@@ -0,0 +1,326 @@
+package no.ntnu.ambulanceallocation.simulation.timewarp;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/***
+ * Time Warp kernel executing logical processes optimistically in parallel rounds.
+ *
+ * <p>In every round each process consumes its inputs up to the global virtual time (GVT) plus
+ * a window, on its own core. Messages sent in a round are delivered between rounds. A message
+ * arriving in the past of its receiver (a straggler) rolls the receiver back to a saved state,
+ * re-executes the inputs before the straggler without sending, and cancels every message the
+ * receiver sent after it with anti-messages, which may roll back other processes in turn.
+ * Saved states older than the GVT are fossil collected.
+ ***/
+public final class TimeWarpKernel<T, S> {
+
+  private static final Key START = new Key(LocalDateTime.MIN, 0, Integer.MIN_VALUE, 0);
+
+  private final List<Process> processes = new ArrayList<>();
+  private final Duration window;
+  private final int saveInterval;
+  private final boolean parallel;
+  private final Statistics statistics = new Statistics();
+
+  public TimeWarpKernel(
+      List<? extends LogicalProcess<T, S>> logicalProcesses,
+      Duration window,
+      int saveInterval,
+      boolean parallel) {
+    this.window = window;
+    this.saveInterval = saveInterval;
+    this.parallel = parallel;
+    for (var i = 0; i < logicalProcesses.size(); i++) {
+      processes.add(new Process(i, logicalProcesses.get(i)));
+    }
+  }
+
+  public Statistics run() {
+    var gvt = globalVirtualTime();
+    while (gvt != null) {
+      var horizon = gvt.plus(window);
+      stream().forEach(process -> process.advance(horizon));
+      statistics.rounds++;
+
+      deliverMessages();
+      gvt = globalVirtualTime();
+      if (gvt != null) {
+        for (var process : processes) {
+          process.collectFossils(gvt);
+        }
+      }
+    }
+    stream().forEach(process -> process.logicalProcess.finish());
+    statistics.inputs = processes.stream().mapToLong(process -> process.inputs).sum();
+    return statistics;
+  }
+
+  private Stream<Process> stream() {
+    return parallel ? processes.parallelStream() : processes.stream();
+  }
+
+  private LocalDateTime globalVirtualTime() {
+    return processes.stream()
+        .map(Process::nextKey)
+        .filter(key -> key != null)
+        .map(Key::time)
+        .min(Comparator.naturalOrder())
+        .orElse(null);
+  }
+
+  private void deliverMessages() {
+    for (var process : processes) {
+      for (var message : process.outgoing) {
+        processes.get(message.target()).inbox.add(message);
+        statistics.messages++;
+      }
+      process.outgoing.clear();
+    }
+
+    var rolledBack = true;
+    while (rolledBack) {
+      rolledBack = false;
+      for (var process : processes) {
+        if (process.hasStraggler()) {
+          process.rollback(Key.of(process.inbox.first()));
+          rolledBack = true;
+        }
+      }
+    }
+  }
+
+  private void cancel(Message<T> message) {
+    statistics.antiMessages++;
+    var target = processes.get(message.target());
+    if (!target.inbox.remove(message)) {
+      // already processed, so undo it before annihilating it
+      target.rollback(Key.of(message));
+      target.inbox.remove(message);
+    }
+  }
+
+  private record Key(LocalDateTime time, int kind, int source, long sequence)
+      implements Comparable<Key> {
+
+    private static final Comparator<Key> order =
+        Comparator.comparing(Key::time)
+            .thenComparingInt(Key::kind)
+            .thenComparingInt(Key::source)
+            .thenComparingLong(Key::sequence);
+
+    // local inputs go before messages with the same time
+    static Key local(LocalDateTime time, int process, long index) {
+      return new Key(time, 0, process, index);
+    }
+
+    static Key of(Message<?> message) {
+      return new Key(message.time(), 1, message.source(), message.sequence());
+    }
+
+    @Override
+    public int compareTo(Key other) {
+      return order.compare(this, other);
+    }
+  }
+
+  private record Processed<T>(Key key, Message<T> message) {}
+
+  private record Saved<S>(Key nextKey, S state, int processed, long localInputs) {}
+
+  private record Sent<T>(Key key, Message<T> message) {}
+
+  private final class Process {
+
+    private final int index;
+    private final LogicalProcess<T, S> logicalProcess;
+    private final TreeSet<Message<T>> inbox = new TreeSet<>();
+    private final List<Message<T>> outgoing = new ArrayList<>();
+    private final List<Processed<T>> processed = new ArrayList<>();
+    private final List<Saved<S>> saves = new ArrayList<>();
+    private final List<Sent<T>> sent = new ArrayList<>();
+    private long localInputs = 0;
+    private long sequence = 0;
+    private int sinceSave = 0;
+    private long inputs = 0;
+
+    private Process(int index, LogicalProcess<T, S> logicalProcess) {
+      this.index = index;
+      this.logicalProcess = logicalProcess;
+      saves.add(new Saved<>(START, logicalProcess.saveState(), 0, 0));
+    }
+
+    private Key nextKey() {
+      var localTime = logicalProcess.nextLocalTime();
+      var localKey = localTime == null ? null : Key.local(localTime, index, localInputs);
+      var messageKey = inbox.isEmpty() ? null : Key.of(inbox.first());
+      if (localKey == null) {
+        return messageKey;
+      }
+      if (messageKey == null) {
+        return localKey;
+      }
+      return localKey.compareTo(messageKey) < 0 ? localKey : messageKey;
+    }
+
+    private Key lastKey() {
+      return processed.isEmpty() ? null : processed.get(processed.size() - 1).key();
+    }
+
+    private boolean hasStraggler() {
+      var lastKey = lastKey();
+      return !inbox.isEmpty() && lastKey != null && Key.of(inbox.first()).compareTo(lastKey) < 0;
+    }
+
+    private void advance(LocalDateTime horizon) {
+      var key = nextKey();
+      while (key != null && !key.time().isAfter(horizon)) {
+        if (sinceSave >= saveInterval) {
+          saves.add(new Saved<>(key, logicalProcess.saveState(), processed.size(), localInputs));
+          sinceSave = 0;
+        }
+        var sendKey = key;
+        Outbox<T> outbox =
+            (target, payload) -> {
+              var message = new Message<>(sendKey.time(), index, target, sequence++, payload);
+              outgoing.add(message);
+              sent.add(new Sent<>(sendKey, message));
+            };
+        process(key, outbox);
+        key = nextKey();
+      }
+    }
+
+    private void process(Key key, Outbox<T> outbox) {
+      if (key.kind() == 0) {
+        logicalProcess.processLocal(outbox);
+        localInputs++;
+        processed.add(new Processed<>(key, null));
+      } else {
+        var message = inbox.pollFirst();
+        logicalProcess.processMessage(message, outbox);
+        processed.add(new Processed<>(key, message));
+      }
+      sinceSave++;
+      inputs++;
+    }
+
+    private void rollback(Key straggler) {
+      statistics.rollbacks++;
+
+      var saveIndex = saves.size() - 1;
+      while (saves.get(saveIndex).nextKey().compareTo(straggler) >= 0) {
+        saveIndex--;
+      }
+      var save = saves.get(saveIndex);
+      saves.subList(saveIndex + 1, saves.size()).clear();
+      logicalProcess.restoreState(save.state());
+      localInputs = save.localInputs();
+
+      // coast forward to the straggler; the messages sent on the way were not affected by it
+      var undone = new ArrayList<>(processed.subList(save.processed(), processed.size()));
+      processed.subList(save.processed(), processed.size()).clear();
+      sinceSave = 0;
+      Outbox<T> discard = (target, payload) -> {};
+      for (var entry : undone) {
+        if (entry.key().compareTo(straggler) < 0) {
+          if (entry.message() == null) {
+            logicalProcess.processLocal(discard);
+            localInputs++;
+          } else {
+            logicalProcess.processMessage(entry.message(), discard);
+          }
+          processed.add(entry);
+          sinceSave++;
+        } else {
+          statistics.rolledBackInputs++;
+          if (entry.message() != null) {
+            inbox.add(entry.message());
+          }
+        }
+      }
+
+      var cancelled = new ArrayList<Message<T>>();
+      var iterator = sent.listIterator(sent.size());
+      while (iterator.hasPrevious()) {
+        var entry = iterator.previous();
+        if (entry.key().compareTo(straggler) < 0) {
+          break;
+        }
+        cancelled.add(entry.message());
+        iterator.remove();
+      }
+      for (var message : cancelled) {
+        cancel(message);
+      }
+    }
+
+    private void collectFossils(LocalDateTime gvt) {
+      // keep the latest state saved before the GVT, no rollback can go further back
+      var keep = 0;
+      for (var i = 0; i < saves.size(); i++) {
+        if (saves.get(i).nextKey().time().isBefore(gvt)) {
+          keep = i;
+        }
+      }
+      var oldest = saves.get(keep);
+      saves.subList(0, keep).clear();
+      saves.replaceAll(
+          save ->
+              new Saved<>(
+                  save.nextKey(),
+                  save.state(),
+                  save.processed() - oldest.processed(),
+                  save.localInputs()));
+      processed.subList(0, oldest.processed()).clear();
+      sent.removeIf(entry -> entry.key().compareTo(oldest.nextKey()) < 0);
+    }
+  }
+
+  public static final class Statistics {
+
+    private long rounds;
+    private long inputs;
+    private long rollbacks;
+    private long rolledBackInputs;
+    private long messages;
+    private long antiMessages;
+
+    public long rounds() {
+      return rounds;
+    }
+
+    public long inputs() {
+      return inputs;
+    }
+
+    public long rollbacks() {
+      return rollbacks;
+    }
+
+    public long rolledBackInputs() {
+      return rolledBackInputs;
+    }
+
+    public long messages() {
+      return messages;
+    }
+
+    public long antiMessages() {
+      return antiMessages;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "Statistics[rounds=%d, inputs=%d, rollbacks=%d, rolledBackInputs=%d, messages=%d,"
+              + " antiMessages=%d]",
+          rounds, inputs, rollbacks, rolledBackInputs, messages, antiMessages);
+    }
+  }
+}
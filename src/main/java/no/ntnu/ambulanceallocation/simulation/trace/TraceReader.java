@@ -0,0 +1,128 @@
+package no.ntnu.ambulanceallocation.simulation.trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/***
+ * Streams a trace written by {@link TraceWriter} back one record at a time, so a run can be
+ * replayed or compared to another run without simulating it again.
+ ***/
+public final class TraceReader implements Iterator<TraceRecord>, AutoCloseable {
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(TraceWriter.BUFFER_SIZE);
+  private boolean endOfFile = false;
+
+  public TraceReader(Path path) {
+    try {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    buffer.limit(0);
+    if (!fill(Integer.BYTES) || buffer.getInt() != TraceWriter.MAGIC) {
+      close();
+      throw new IllegalStateException("Not a simulation trace: " + path);
+    }
+  }
+
+  public static void replay(Path path, Consumer<TraceRecord> consumer) {
+    try (var reader = new TraceReader(path)) {
+      reader.forEachRemaining(consumer);
+    }
+  }
+
+  // the index and records of the first entry where the two traces differ
+  public static Optional<Difference> firstDifference(Path expected, Path actual) {
+    try (var expectedReader = new TraceReader(expected);
+        var actualReader = new TraceReader(actual)) {
+      for (var index = 0L; ; index++) {
+        var expectedRecord = expectedReader.hasNext() ? expectedReader.next() : null;
+        var actualRecord = actualReader.hasNext() ? actualReader.next() : null;
+        if (expectedRecord == null && actualRecord == null) {
+          return Optional.empty();
+        }
+        if (expectedRecord == null || !expectedRecord.equals(actualRecord)) {
+          return Optional.of(new Difference(index, expectedRecord, actualRecord));
+        }
+      }
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return fill(Byte.BYTES);
+  }
+
+  @Override
+  public TraceRecord next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    var header = Byte.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES + Short.BYTES;
+    if (!fill(header)) {
+      throw new IllegalStateException("Trace ends in the middle of a record");
+    }
+    var type = TraceType.get(buffer.get());
+    var time = LocalDateTime.ofEpochSecond(buffer.getLong(), 0, ZoneOffset.UTC);
+    var ambulanceId = buffer.getInt();
+    var incidentId = buffer.getInt();
+    var location = buffer.getLong();
+    var count = buffer.getShort();
+
+    if (!fill(count * 2 * Integer.BYTES)) {
+      throw new IllegalStateException("Trace ends in the middle of a record");
+    }
+    var candidates = new int[count];
+    var scores = new int[count];
+    for (var i = 0; i < count; i++) {
+      candidates[i] = buffer.getInt();
+      scores[i] = buffer.getInt();
+    }
+    return new TraceRecord(type, time, ambulanceId, incidentId, location, candidates, scores);
+  }
+
+  // makes sure the buffer holds at least the given number of bytes, unless the file ends first
+  private boolean fill(int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    if (endOfFile) {
+      return false;
+    }
+    buffer.compact();
+    try {
+      while (buffer.position() < bytes) {
+        if (channel.read(buffer) < 0) {
+          endOfFile = true;
+          break;
+        }
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    buffer.flip();
+    return buffer.remaining() >= bytes;
+  }
+
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+
+  public record Difference(long index, TraceRecord expected, TraceRecord actual) {}
+}
@@ -0,0 +1,57 @@
+package no.ntnu.ambulanceallocation.simulation.trace;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/***
+ * One entry of a simulation trace. Ambulance and incident ids are -1 when the event has none, the
+ * location is the id of the grid cell the ambulance or incident is in, and dispatch entries list
+ * the chosen ambulances with their dispatch scores. Events of several ambulances, like scene
+ * departures, have an entry for each ambulance.
+ ***/
+public record TraceRecord(
+    TraceType type,
+    LocalDateTime time,
+    int ambulanceId,
+    int incidentId,
+    long location,
+    int[] candidates,
+    int[] scores) {
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof TraceRecord record
+        && type == record.type
+        && time.equals(record.time)
+        && ambulanceId == record.ambulanceId
+        && incidentId == record.incidentId
+        && location == record.location
+        && Arrays.equals(candidates, record.candidates)
+        && Arrays.equals(scores, record.scores);
+  }
+
+  @Override
+  public int hashCode() {
+    var result = type.hashCode();
+    result = 31 * result + time.hashCode();
+    result = 31 * result + Long.hashCode(location);
+    result = 31 * result + ambulanceId;
+    result = 31 * result + incidentId;
+    result = 31 * result + Arrays.hashCode(candidates);
+    return 31 * result + Arrays.hashCode(scores);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TraceRecord[type=%s, time=%s, ambulance=%d, incident=%d, location=%d, candidates=%s,"
+            + " scores=%s]",
+        type,
+        time,
+        ambulanceId,
+        incidentId,
+        location,
+        Arrays.toString(candidates),
+        Arrays.toString(scores));
+  }
+}
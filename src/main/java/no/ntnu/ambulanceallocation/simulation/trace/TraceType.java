@@ -0,0 +1,19 @@
+package no.ntnu.ambulanceallocation.simulation.trace;
+
+public enum TraceType {
+  NEW_CALL,
+  PARTIALLY_RESPONDED_CALL,
+  ABORT_INCIDENT,
+  SCENE_ARRIVAL,
+  SCENE_DEPARTURE,
+  HOSPITAL_DEPARTURE,
+  LOCATION_UPDATE,
+  DISPATCH,
+  HOSPITAL_TRANSPORT;
+
+  private static final TraceType[] types = values();
+
+  static TraceType get(int ordinal) {
+    return types[ordinal];
+  }
+}
@@ -0,0 +1,91 @@
+package no.ntnu.ambulanceallocation.simulation.trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/***
+ * Writes a simulation trace as fixed-layout binary entries through a buffered file channel:
+ * type (byte), time (epoch seconds, long), ambulance id (int), incident id (int), location (long),
+ * and a candidate count (short) followed by an (id, score) pair of ints per candidate.
+ ***/
+public final class TraceWriter implements AutoCloseable {
+
+  static final int MAGIC = 0x54524345; // TRCE
+  static final int BUFFER_SIZE = 1 << 16;
+  private static final int[] NONE = new int[0];
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+  public TraceWriter(Path path) {
+    try {
+      channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    buffer.putInt(MAGIC);
+  }
+
+  public void write(
+      TraceType type, LocalDateTime time, int ambulanceId, int incidentId, long location) {
+    write(type, time, ambulanceId, incidentId, location, NONE, NONE);
+  }
+
+  public void write(
+      TraceType type,
+      LocalDateTime time,
+      int ambulanceId,
+      int incidentId,
+      long location,
+      int[] candidates,
+      int[] scores) {
+    var size = Byte.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES + Short.BYTES;
+    size += candidates.length * 2 * Integer.BYTES;
+    if (buffer.remaining() < size) {
+      flush();
+    }
+    buffer.put((byte) type.ordinal());
+    buffer.putLong(time.toEpochSecond(ZoneOffset.UTC));
+    buffer.putInt(ambulanceId);
+    buffer.putInt(incidentId);
+    buffer.putLong(location);
+    buffer.putShort((short) candidates.length);
+    for (var i = 0; i < candidates.length; i++) {
+      buffer.putInt(candidates[i]);
+      buffer.putInt(scores[i]);
+    }
+  }
+
+  private void flush() {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() {
+    flush();
+    try {
+      channel.close();
+    } catch (IOException exception) {
+      throw new UncheckedIOException(exception);
+    }
+  }
+}
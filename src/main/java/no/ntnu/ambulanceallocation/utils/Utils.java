@@ -3,39 +3,66 @@ package no.ntnu.ambulanceallocation.utils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class Utils {
 
-  public static final Random random = new Random(100620221);
+  private static final long SEED = 100620221;
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  // one generator per thread, so optimizer workers never contend on a shared seed. A thread
+  // without a stream of its own draws from the stream of its name, not of its creation order
+  private static final ThreadLocal<Random> random =
+      ThreadLocal.withInitial(() -> new Random(seed(Thread.currentThread().getName().hashCode())));
+
+  // gives the calling thread the generator of the stream with the given key, like an island and
+  // the index of a breeding task, so what it draws does not depend on which thread runs the task
+  public static void useStream(long... key) {
+    random.set(new Random(seed(key)));
+  }
+
+  private static long seed(long... key) {
+    var seed = SEED + key.length;
+    for (var part : key) {
+      seed = seed * GOLDEN_GAMMA + part;
+    }
+    return seed;
+  }
+
+  public static Random random() {
+    return random.get();
+  }
 
   public static double randomDouble() {
-    return random.nextDouble();
+    return random().nextDouble();
   }
 
   public static int randomInt(int bound) {
-    return random.nextInt(bound);
+    return random().nextInt(bound);
   }
 
   public static <T> int randomIndexOf(List<T> list) {
-    return random.nextInt(list.size());
+    return random().nextInt(list.size());
   }
 
   public static boolean nextBoolean() {
-    return random.nextBoolean();
+    return random().nextBoolean();
   }
 
-  // Pick x random items from a list
+  // Pick x random items at distinct positions of a list, equal items may both be picked
   public static <T> List<T> randomChooseN(List<T> list, int numberOfItems) {
     List<T> selection = new ArrayList<>(numberOfItems);
+    Set<Integer> indices = new HashSet<>();
     while (selection.size() < numberOfItems) {
-      T element = list.get(randomIndexOf(list));
-      if (!selection.contains(element)) {
-        selection.add(element);
+      var index = randomIndexOf(list);
+      if (indices.add(index)) {
+        selection.add(list.get(index));
       }
     }
     return selection;
@@ -0,0 +1,47 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class AllocationTest {
+
+  @Test
+  public void permutedAllocationsShouldHashEqually() {
+    var allocation = new Allocation(List.of(List.of(1, 2, 2, 5), List.of(3, 3)));
+    var permuted = new Allocation(List.of(List.of(2, 5, 1, 2), List.of(3, 3)));
+    var swappedShifts = new Allocation(List.of(List.of(3, 3), List.of(1, 2, 2, 5)));
+
+    assertEquals(allocation.zobristHash(), permuted.zobristHash());
+    assertNotEquals(allocation.zobristHash(), swappedShifts.zobristHash());
+  }
+
+  @Test
+  public void changesShouldUpdateHash() {
+    var allocation = new Allocation(List.of(List.of(1, 2, 2, 5), List.of(3, 3)));
+
+    allocation.set(0, 3, 4);
+    allocation.move(1, 3, 6);
+    allocation.setShiftAllocation(0, List.of(4, 2, 1, 1));
+
+    var expected = new Allocation(List.of(List.of(1, 1, 2, 4), List.of(6, 3)));
+    assertEquals(expected.zobristHash(), allocation.zobristHash());
+    assertEquals(expected.counts(), allocation.counts());
+    assertEquals(List.of(3, 6), allocation.getNightShiftAllocation());
+  }
+
+  @Test
+  public void changesShouldNotAlterEarlierCounts() {
+    var allocation = new Allocation(List.of(List.of(1, 2, 2, 5), List.of(3, 3)));
+    var counts = allocation.counts();
+
+    allocation.set(0, 1, 4);
+    allocation.move(1, 3, 6);
+
+    assertEquals(new Allocation(List.of(List.of(1, 2, 2, 5), List.of(3, 3))).counts(), counts);
+    assertEquals(1, allocation.counts().get(0, 4));
+    assertEquals(1, allocation.counts().get(1, 6));
+  }
+}
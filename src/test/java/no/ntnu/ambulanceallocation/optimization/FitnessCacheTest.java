@@ -0,0 +1,58 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache.Evaluation;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.Test;
+
+public class FitnessCacheTest {
+
+  @Test
+  public void permutedAllocationsShouldShareEvaluation() {
+    var config = Config.defaultConfig();
+    var allocation = new Allocation(List.of(List.of(1, 2, 2, 5), List.of(3, 3)));
+    var permuted = new Allocation(List.of(List.of(2, 5, 1, 2), List.of(3, 3)));
+    var evaluation = new Evaluation(0.25, 0.75);
+
+    FitnessCache.put(allocation, config, evaluation);
+
+    assertEquals(evaluation, FitnessCache.get(permuted, config));
+  }
+
+  @Test
+  public void shiftsShouldNotBeInterchangeable() {
+    var config = Config.defaultConfig();
+    FitnessCache.put(
+        new Allocation(List.of(List.of(4, 4), List.of(6))), config, new Evaluation(0.5, 0.5));
+
+    assertNull(FitnessCache.get(new Allocation(List.of(List.of(6), List.of(4, 4))), config));
+  }
+
+  @Test
+  public void changedAllocationsShouldMiss() {
+    var config = Config.defaultConfig();
+    var allocation = new Allocation(List.of(List.of(10, 11), List.of(12)));
+    FitnessCache.put(allocation, config, new Evaluation(0.3, 0.7));
+
+    allocation.set(0, 1, 13);
+
+    assertNull(FitnessCache.get(allocation, config));
+    assertEquals(
+        new Evaluation(0.3, 0.7),
+        FitnessCache.get(new Allocation(List.of(List.of(11, 10), List.of(12))), config));
+  }
+
+  @Test
+  public void otherConfigsShouldMiss() {
+    var config = Config.defaultConfig();
+    var allocation = new Allocation(List.of(List.of(7, 8), List.of(9)));
+    FitnessCache.put(allocation, config, new Evaluation(0.1, 0.9));
+
+    var otherConfig = Config.withinPeriod(config.START_DATE_TIME(), config.START_DATE_TIME());
+
+    assertNull(FitnessCache.get(allocation, otherConfig));
+  }
+}
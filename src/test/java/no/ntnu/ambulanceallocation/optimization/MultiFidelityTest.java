@@ -0,0 +1,70 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.ga.Individual;
+import no.ntnu.ambulanceallocation.optimization.initializer.Random;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class MultiFidelityTest {
+
+  @AfterEach
+  public void clearFitnessCache() {
+    FitnessCache.clear();
+  }
+
+  @Test
+  public void rankCorrelationShouldOnlyDependOnOrder() {
+    var x = new double[] {1.0, 2.0, 3.0, 4.0, 5.0};
+
+    assertEquals(1.0, MultiFidelity.rankCorrelation(x, new double[] {1, 4, 9, 16, 25}), 1e-9);
+    assertEquals(-1.0, MultiFidelity.rankCorrelation(x, new double[] {5, 3, 2, 0, -7}), 1e-9);
+    assertEquals(0.9, MultiFidelity.rankCorrelation(x, new double[] {1, 3, 2, 4, 5}), 1e-9);
+  }
+
+  @Test
+  public void infiniteCutoffShouldEvaluateEverySolutionInFull() {
+    var solutions = solutions(5);
+    var evaluated = new ArrayList<Individual>();
+
+    MultiFidelity.evaluate(
+        Config.defaultConfig(), solutions, Double.POSITIVE_INFINITY, evaluated::addAll);
+
+    assertEquals(solutions, evaluated);
+  }
+
+  @Test
+  public void truncatedSolutionsShouldNotBeScreenedAgain() {
+    var solutions = solutions(5);
+    solutions.forEach(solution -> solution.setEvaluation(0.5, 0.0, true));
+    var evaluated = new ArrayList<Individual>();
+
+    MultiFidelity.evaluate(Config.defaultConfig(), solutions, 1.0, evaluated::addAll);
+
+    assertEquals(solutions, evaluated);
+  }
+
+  @Test
+  public void solutionsRuledOutByTheCutoffShouldNotBeEvaluated() {
+    var solutions = solutions(5);
+    solutions.forEach(solution -> solution.setEvaluation(2.0, 0.0, true));
+    var evaluated = new ArrayList<Individual>();
+
+    MultiFidelity.evaluate(Config.defaultConfig(), solutions, 1.0, evaluated::addAll);
+
+    assertTrue(evaluated.isEmpty());
+  }
+
+  private static List<Individual> solutions(int size) {
+    var solutions = new ArrayList<Individual>();
+    for (var i = 0; i < size; i++) {
+      solutions.add(new Individual(new Random(), Config.defaultConfig()));
+    }
+    return solutions;
+  }
+}
@@ -0,0 +1,39 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class StationCountsTest {
+
+  @Test
+  public void permutedAllocationsShouldHaveEqualCounts() {
+    var counts = new Allocation(List.of(List.of(1, 2, 2, 5), List.of(3, 3))).counts();
+    var permuted = new Allocation(List.of(List.of(2, 5, 1, 2), List.of(3, 3))).counts();
+
+    assertEquals(counts, permuted);
+    assertEquals(counts.hashCode(), permuted.hashCode());
+    assertEquals(0, counts.distance(permuted));
+  }
+
+  @Test
+  public void distanceShouldCountMovedAmbulances() {
+    var counts = new Allocation(List.of(List.of(1, 2, 2), List.of(3, 3))).counts();
+    var other = new Allocation(List.of(List.of(1, 2, 4), List.of(3, 6))).counts();
+
+    assertNotEquals(counts, other);
+    assertEquals(4, counts.distance(other));
+  }
+
+  @Test
+  public void toAllocationShouldKeepCounts() {
+    var counts = new Allocation(List.of(List.of(5, 1, 2, 1), List.of(0, 3))).counts();
+    var allocation = counts.toAllocation();
+
+    assertEquals(List.of(1, 1, 2, 5), allocation.getDayShiftAllocation());
+    assertEquals(List.of(0, 3), allocation.getNightShiftAllocation());
+    assertEquals(counts, allocation.counts());
+  }
+}
@@ -0,0 +1,32 @@
+package no.ntnu.ambulanceallocation.optimization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import no.ntnu.ambulanceallocation.optimization.ga.Individual;
+import no.ntnu.ambulanceallocation.optimization.initializer.Random;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.Test;
+
+public class SurrogateTest {
+
+  @Test
+  public void surrogateShouldLearnLinearFitness() {
+    var surrogate = new Surrogate(1e-6, 100);
+    var config = Config.defaultConfig();
+    var training = new ArrayList<Individual>();
+    for (var i = 0; i < 500; i++) {
+      var individual = new Individual(new Random(), config);
+      var counts = individual.getAllocation().counts();
+      individual.setEvaluation(10.0 + 2.0 * counts.get(0, 0) - counts.get(1, 3), 0.0, false);
+      training.add(individual);
+    }
+
+    assertFalse(surrogate.isTrained());
+    surrogate.addAll(training);
+    assertTrue(surrogate.isTrained());
+    assertEquals(0.0, surrogate.meanAbsoluteError(training), 1e-3);
+  }
+}
@@ -0,0 +1,49 @@
+package no.ntnu.ambulanceallocation.optimization.farm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Reply;
+import no.ntnu.ambulanceallocation.optimization.sls.NeighborhoodFunction;
+import no.ntnu.ambulanceallocation.optimization.sls.SlsSolution;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class FitnessFarmTest {
+
+  @AfterEach
+  public void stopFitnessFarm() {
+    FitnessFarm.stop();
+    FitnessCache.clear();
+  }
+
+  @Test
+  public void slsStepShouldEvaluateNeighboursInTheFarm() {
+    var simulated = new AtomicInteger();
+    // higher station ids are better, so every forward move that does not wrap around improves
+    FitnessFarm.startLocally(
+        request ->
+            request.allocations().stream()
+                .map(
+                    allocation -> {
+                      simulated.incrementAndGet();
+                      var sum = allocation.stream().flatMap(List::stream).mapToInt(i -> i).sum();
+                      return new Reply(-sum / 1000.0, 0.0, false);
+                    })
+                .toList());
+    assertTrue(FitnessFarm.isEnabled());
+
+    var solution = new SlsSolution();
+    var fitness = solution.getFitness();
+    assertEquals(1, simulated.get());
+
+    solution.greedyStep(NeighborhoodFunction.FORWARD);
+    assertTrue(simulated.get() > 1);
+    assertTrue(solution.getFitness() < fitness);
+    assertFalse(solution.isTruncated());
+  }
+}
@@ -0,0 +1,60 @@
+package no.ntnu.ambulanceallocation.optimization.farm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Reply;
+import no.ntnu.ambulanceallocation.optimization.farm.FitnessProtocol.Request;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.Test;
+
+public class FitnessProtocolTest {
+
+  @Test
+  public void requestShouldKeepConfigAndCounts() throws IOException {
+    var config = Config.defaultConfig();
+    var allocations =
+        List.of(
+            new Allocation(List.of(List.of(5, 1, 1), List.of(2))),
+            new Allocation(List.of(List.of(0, 18, 3), List.of(18))));
+    var cutoffs = new double[] {0.5, Double.POSITIVE_INFINITY};
+
+    var bytes = new ByteArrayOutputStream();
+    FitnessProtocol.writeRequest(
+        new DataOutputStream(bytes), new Request(config, allocations, cutoffs));
+    var request =
+        FitnessProtocol.readRequest(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(config, request.config());
+    assertEquals(allocations.get(0).counts(), request.allocations().get(0).counts());
+    assertEquals(allocations.get(1).counts(), request.allocations().get(1).counts());
+    assertArrayEquals(cutoffs, request.cutoffs());
+  }
+
+  @Test
+  public void repliesShouldMatchTheBatchSize() throws IOException {
+    var replies = List.of(new Reply(0.25, 0.75, false), new Reply(0.5, 0.0, true));
+
+    var bytes = new ByteArrayOutputStream();
+    FitnessProtocol.writeReplies(new DataOutputStream(bytes), replies);
+
+    assertEquals(
+        replies,
+        FitnessProtocol.readReplies(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 2));
+    assertThrows(
+        IOException.class,
+        () ->
+            FitnessProtocol.readReplies(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 3));
+  }
+}
@@ -0,0 +1,27 @@
+package no.ntnu.ambulanceallocation.optimization.ga;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import no.ntnu.ambulanceallocation.optimization.initializer.Random;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.Test;
+
+public class PopulationTest {
+
+  @Test
+  public void diversityShouldBeMeanPairwiseDistance() {
+    var population = new Population(30, new Random(), Config.defaultConfig());
+    var individuals = new ArrayList<>(population.getList());
+
+    var distances = 0.0;
+    for (var individual : individuals) {
+      for (var other : individuals) {
+        distances += individual.distance(other);
+      }
+    }
+    var expected = distances / (individuals.size() * individuals.size());
+
+    assertEquals(expected, population.getDiversity(), 1e-9);
+  }
+}
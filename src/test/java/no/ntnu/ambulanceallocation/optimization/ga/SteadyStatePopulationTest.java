@@ -0,0 +1,72 @@
+package no.ntnu.ambulanceallocation.optimization.ga;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache;
+import no.ntnu.ambulanceallocation.optimization.initializer.Random;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class SteadyStatePopulationTest {
+
+  @AfterEach
+  public void clearFitnessCache() {
+    FitnessCache.clear();
+  }
+
+  @Test
+  public void offspringShouldOnlyReplaceWorseIndividuals() {
+    var population = population(false);
+    assertEquals(0.9, population.getWorstFitness(), 1e-9);
+
+    assertFalse(population.replaceWorst(offspring(0.95, false)));
+    assertFalse(population.replaceWorst(offspring(0.5, true)));
+    assertEquals(0.9, population.getWorstFitness(), 1e-9);
+
+    assertTrue(population.replaceWorst(offspring(0.5, false)));
+    assertEquals(0.8, population.getWorstFitness(), 1e-9);
+    assertEquals(0.1, population.snapshot().best().getFitness(), 1e-9);
+  }
+
+  @Test
+  public void distinctPopulationShouldRejectDuplicates() {
+    var distinct = population(true);
+    assertFalse(distinct.replaceWorst(new Individual(distinct.snapshot().best())));
+    assertFalse(distinct.replaceWorst(copyWithFitness(distinct, 0.05)));
+
+    var population = population(false);
+    assertTrue(population.replaceWorst(copyWithFitness(population, 0.05)));
+    assertEquals(0.05, population.snapshot().best().getFitness(), 1e-9);
+  }
+
+  // nine individuals with fitness 0.1 to 0.9, none of them in need of a simulation
+  private static SteadyStatePopulation population(boolean distinct) {
+    var individuals = new ArrayList<Individual>();
+    for (var i = 1; i <= 9; i++) {
+      individuals.add(offspring(i / 10.0, false));
+    }
+    return new SteadyStatePopulation(new Population(individuals), distinct);
+  }
+
+  private static Individual offspring(double fitness, boolean truncated) {
+    var individual = new Individual(new Random(), Config.defaultConfig());
+    individual.setEvaluation(fitness, 1.0 - fitness, truncated);
+    return individual;
+  }
+
+  // a new individual with the allocation of the worst member, and a better fitness
+  private static Individual copyWithFitness(SteadyStatePopulation population, double fitness) {
+    var worst =
+        population.snapshot().getList().stream()
+            .max(Comparator.comparingDouble(Individual::getFitness))
+            .orElseThrow();
+    var copy = new Individual(worst);
+    copy.setEvaluation(fitness, 1.0 - fitness, false);
+    return copy;
+  }
+}
@@ -1,13 +1,27 @@
 package no.ntnu.ambulanceallocation.optimization.sls;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.FitnessCache;
+import no.ntnu.ambulanceallocation.simulation.BaseStation;
+import no.ntnu.ambulanceallocation.simulation.Config;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 public class SlsSolutionTest {
 
+  @AfterEach
+  public void clearFitnessCache() {
+    FitnessCache.clear();
+  }
+
   @Test
   public void comparableBasedOnFitnessShouldWork() {
     var solution1 = new SlsSolution();
@@ -19,4 +33,70 @@ public class SlsSolutionTest {
     var worstSolution = solutions.get(1);
     assertTrue(bestSolution.compareTo(worstSolution) <= 0);
   }
+
+  @Test
+  public void sampleSizeShouldCapEvaluatedNeighbours() {
+    var solution = evaluatedSolution(0.5);
+    forwardNeighbours(solution).forEach(neighbour -> cache(neighbour, 0.7));
+
+    var before = FitnessCache.getStatistics();
+    solution.greedyStep(NeighborhoodFunction.FORWARD, 5, false);
+
+    assertEquals(5, FitnessCache.getStatistics().minus(before).requestCount());
+  }
+
+  @Test
+  public void firstImprovementShouldOnlyTakeAnImprovingNeighbour() {
+    var solution = evaluatedSolution(0.5);
+    var allocation = new Allocation(solution.getAllocation());
+    var neighbours = forwardNeighbours(solution);
+    neighbours.forEach(neighbour -> cache(neighbour, 0.7));
+
+    solution.greedyStep(NeighborhoodFunction.FORWARD, 0, true);
+    assertEquals(0.5, solution.getFitness(), 1e-9);
+    assertEquals(allocation, solution.getAllocation());
+
+    var improving = neighbours.get(0);
+    cache(improving, 0.3);
+    solution.greedyStep(NeighborhoodFunction.FORWARD, 0, true);
+    assertEquals(0.3, solution.getFitness(), 1e-9);
+    // another move may lead to the same station counts, and so to the same cached fitness
+    assertEquals(improving.counts(), solution.getAllocation().counts());
+  }
+
+  @Test
+  public void truncatedNeighbourShouldNotImprove() {
+    var neighbour = new SlsSolution();
+    neighbour.setEvaluation(0.3, 0.0, true);
+    assertFalse(SlsSolution.improves(neighbour, 0.5));
+
+    neighbour.setEvaluation(0.3, 0.0, false);
+    assertTrue(SlsSolution.improves(neighbour, 0.5));
+    assertFalse(SlsSolution.improves(neighbour, 0.3));
+  }
+
+  private static SlsSolution evaluatedSolution(double fitness) {
+    var solution = new SlsSolution();
+    cache(solution.getAllocation(), fitness);
+    assertEquals(fitness, solution.getFitness(), 1e-9);
+    return solution;
+  }
+
+  // every allocation a forward move leads to, with one ambulance moved to the next base station
+  private static List<Allocation> forwardNeighbours(SlsSolution solution) {
+    var neighbours = new ArrayList<Allocation>();
+    for (var shift = 0; shift < solution.getAllocation().size(); shift++) {
+      for (var variable = 0; variable < solution.getAllocation().get(shift).size(); variable++) {
+        var neighbour = new Allocation(solution.getAllocation());
+        var value = neighbour.get(shift).get(variable);
+        neighbour.set(shift, variable, (value + 1) % BaseStation.size());
+        neighbours.add(neighbour);
+      }
+    }
+    return neighbours;
+  }
+
+  private static void cache(Allocation allocation, double fitness) {
+    FitnessCache.put(allocation, Config.defaultConfig(), new FitnessCache.Evaluation(fitness, 0.0));
+  }
 }
@@ -0,0 +1,63 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
+import org.junit.jupiter.api.Test;
+
+public class CheckpointTest {
+
+  @Test
+  public void resumedSimulationsShouldMatchFullSimulations() {
+    var config = Config.defaultConfig();
+    var initializer = new PopulationProportionate();
+    var parent =
+        new Allocation(
+            List.of(
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+                initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+
+    assertNull(
+        Simulation.withConfig(config)
+            .simulate(parent, Double.POSITIVE_INFINITY, null)
+            .getCheckpoint());
+    var checkpoint =
+        Simulation.withConfig(config)
+            .withCheckpointRecording()
+            .simulate(parent, Double.POSITIVE_INFINITY, null)
+            .getCheckpoint();
+    assertNotNull(checkpoint);
+
+    for (var shift = 0; shift < parent.size(); shift++) {
+      for (var baseStation : List.of(BaseStation.EIDSVOLL, BaseStation.LORENSKOG)) {
+        var child = neighbour(parent, shift, baseStation);
+
+        var expected = Simulation.withConfig(config).simulate(child);
+        var actual =
+            Simulation.withConfig(config).simulate(child, Double.POSITIVE_INFINITY, checkpoint);
+        assertEquals(expected.averageResponseTimes(), actual.averageResponseTimes());
+        assertEquals(expected.averageSurvivalRate(), actual.averageSurvivalRate());
+        if (shift == 0) {
+          // the checkpoint is taken before the first day shift, so day moves can resume from it
+          assertSame(checkpoint, actual.getCheckpoint());
+        }
+      }
+    }
+  }
+
+  private static Allocation neighbour(Allocation allocation, int shift, BaseStation baseStation) {
+    var shifts = new ArrayList<List<Integer>>();
+    for (var i = 0; i < allocation.size(); i++) {
+      shifts.add(new ArrayList<>(allocation.get(i)));
+    }
+    shifts.get(shift).set(0, baseStation.getId());
+    return new Allocation(shifts);
+  }
+}
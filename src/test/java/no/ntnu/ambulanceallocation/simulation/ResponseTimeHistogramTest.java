@@ -0,0 +1,77 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
+import org.junit.jupiter.api.Test;
+
+public class ResponseTimeHistogramTest {
+
+  @Test
+  public void percentilesWhileRecordingShouldMatchFreshHistograms() {
+    var random = new Random(42);
+    var histogram = new ResponseTimeHistogram();
+    var reference = new int[500];
+
+    for (var i = 0; i < reference.length; i++) {
+      reference[i] = random.nextInt(4 * 60 * 60);
+      histogram.record(reference[i]);
+
+      var fresh = new ResponseTimeHistogram();
+      for (var j = 0; j <= i; j++) {
+        fresh.record(reference[j]);
+      }
+      var remaining = reference.length - i - 1;
+      assertEquals(fresh.percentile(90, remaining), histogram.percentile(90, remaining));
+      // a lower rank afterwards has to scan back from the first bucket
+      assertEquals(fresh.percentile(10), histogram.percentile(10));
+    }
+  }
+
+  @Test
+  public void mergedHistogramsShouldMatchOneHistogram() {
+    var random = new Random(7);
+    var first = new ResponseTimeHistogram();
+    var second = new ResponseTimeHistogram();
+    var whole = new ResponseTimeHistogram();
+    for (var i = 0; i < 1000; i++) {
+      var responseTime = random.nextInt(2 * 60 * 60);
+      (i % 3 == 0 ? first : second).record(responseTime);
+      whole.record(responseTime);
+    }
+    // percentiles asked for before merging must not leave the cursor behind
+    first.percentile(90);
+
+    first.add(second);
+    assertEquals(whole.getTotalCount(), first.getTotalCount());
+    assertEquals(whole.getMaxValue(), first.getMaxValue());
+    for (var percentile : List.of(1.0, 10.0, 50.0, 90.0, 99.0, 100.0)) {
+      assertEquals(whole.percentile(percentile), first.percentile(percentile));
+    }
+  }
+
+  @Test
+  public void urgencyPercentilesShouldNotNeedIncidentRecords() {
+    var first = new SimulationResults(false);
+    var second = new SimulationResults(false);
+    var expected = new ResponseTimeHistogram();
+    var time = LocalDateTime.of(2017, 8, 7, 0, 0);
+    for (var i = 0; i < 200; i++) {
+      var urgencyLevel = i % 2 == 0 ? UrgencyLevel.ACUTE : UrgencyLevel.URGENT;
+      var responseTime = 60 + 7 * i;
+      (i < 100 ? first : second).add(time, responseTime, urgencyLevel);
+      if (urgencyLevel == UrgencyLevel.ACUTE) {
+        expected.record(responseTime);
+      }
+    }
+
+    var merged = SimulationResults.merge(List.of(first, second));
+    assertEquals(expected.percentile(90), merged.responseTimePercentile(UrgencyLevel.ACUTE, 90));
+    assertEquals(
+        expected.getTotalCount(),
+        merged.getResponseTimeHistogram(UrgencyLevel.ACUTE).getTotalCount());
+  }
+}
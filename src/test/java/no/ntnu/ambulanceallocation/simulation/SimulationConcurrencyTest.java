@@ -0,0 +1,112 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.Initializer;
+import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
+import no.ntnu.ambulanceallocation.optimization.initializer.Uniform;
+import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchDelay;
+import no.ntnu.ambulanceallocation.simulation.dispatch.DispatchPolicy;
+import org.junit.jupiter.api.Test;
+
+public class SimulationConcurrencyTest {
+
+  private static final int REPETITIONS = 8;
+
+  @Test
+  public void parallelSimulationsShouldMatchSequentialSimulations() {
+    var runs = new ArrayList<Run>();
+    for (var config : configs()) {
+      runs.add(new Run(config, allocation(new PopulationProportionate())));
+      runs.add(new Run(config, allocation(new Uniform())));
+    }
+
+    var sequential = runs.stream().map(Run::simulate).toList();
+
+    for (var repetition = 0; repetition < REPETITIONS; repetition++) {
+      // rotate the runs so that differently configured simulations execute side by side
+      var offset = repetition;
+      var parallel =
+          IntStream.range(0, runs.size())
+              .parallel()
+              .mapToObj(i -> runs.get((i + offset) % runs.size()))
+              .map(Run::simulate)
+              .toList();
+
+      for (var i = 0; i < runs.size(); i++) {
+        var expected = sequential.get((i + offset) % runs.size());
+        var actual = parallel.get(i);
+        assertEquals(expected.averageResponseTimes(), actual.averageResponseTimes());
+        assertEquals(expected.averageSurvivalRate(), actual.averageSurvivalRate());
+      }
+    }
+  }
+
+  @Test
+  public void batchSimulationsShouldMatchIndividualSimulations() {
+    var allocations = new ArrayList<Allocation>();
+    for (var repetition = 0; repetition < REPETITIONS; repetition++) {
+      allocations.add(allocation(new PopulationProportionate()));
+      allocations.add(allocation(new Uniform()));
+    }
+
+    for (var config : configs()) {
+      var batch = Simulation.simulateAll(config, allocations);
+
+      for (var i = 0; i < allocations.size(); i++) {
+        var expected = Simulation.withConfig(config).simulate(allocations.get(i));
+        var actual = batch.get(i);
+        assertEquals(expected.averageResponseTimes(), actual.averageResponseTimes());
+        assertEquals(expected.averageSurvivalRate(), actual.averageSurvivalRate());
+      }
+    }
+  }
+
+  private static List<Config> configs() {
+    return List.of(
+        Config.defaultConfig(),
+        withDispatch(DispatchPolicy.Fastest, DispatchDelay.SIMULATED),
+        withDispatch(DispatchPolicy.CoverageBaseStation, DispatchDelay.HISTORIC),
+        withDispatch(DispatchPolicy.CoverageNearby, DispatchDelay.HISTORIC_MEDIAN));
+  }
+
+  private static Config withDispatch(DispatchPolicy dispatchPolicy, DispatchDelay dispatchDelay) {
+    var config = Config.defaultConfig();
+    return new Config(
+        config.START_DATE_TIME(),
+        config.END_DATE_TIME(),
+        config.NUMBER_OF_AMBULANCES_DAY(),
+        config.NUMBER_OF_AMBULANCES_NIGHT(),
+        dispatchPolicy,
+        config.BUFFER_SIZE(),
+        config.UPDATE_LOCATION_PERIOD(),
+        config.USE_URGENCY_FITNESS(),
+        config.RESPONSE_TIME_PERCENTILE(),
+        config.ENABLE_REDISPATCH(),
+        config.ENABLE_QUEUE_NEXT(),
+        dispatchDelay,
+        config.HANDLING_DELAY(),
+        config.HISTORIC_HOSPITAL_TIME(),
+        config.INCIDENT_DISTRIBUTION(),
+        config.CONSTRAINT_STRATEGY());
+  }
+
+  private static Allocation allocation(Initializer initializer) {
+    return new Allocation(
+        List.of(
+            initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+            initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+  }
+
+  private record Run(Config config, Allocation allocation) {
+
+    SimulationResults simulate() {
+      return Simulation.withConfig(config).simulate(allocation);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import no.ntnu.ambulanceallocation.simulation.incident.UrgencyLevel;
+import org.junit.jupiter.api.Test;
+
+public class SlicedSimulationTest {
+
+  @Test
+  public void slicesShouldCountEveryIncidentOnce() {
+    var config = Config.defaultConfig();
+    assertSameIncidents(config, Simulation.slices(config, Duration.ofHours(1), 1));
+  }
+
+  @Test
+  public void incidentOnSliceBoundaryShouldBeCountedOnce() {
+    var config = Config.defaultConfig();
+    var incidents = IncidentStream.of(config);
+    var boundary = incidents.callReceived(incidents.size() / 2);
+
+    var slices =
+        List.of(
+            config.withPeriod(config.START_DATE_TIME(), boundary, 1),
+            config.withPeriod(boundary, config.END_DATE_TIME(), 1));
+    assertSameIncidents(config, slices);
+  }
+
+  private static void assertSameIncidents(Config config, List<Config> slices) {
+    var serial = IncidentStream.of(config);
+    for (var urgencyLevel : UrgencyLevel.values()) {
+      var sliced =
+          slices.stream()
+              .mapToInt(slice -> IncidentStream.of(slice).responseTimeIncidents(urgencyLevel))
+              .sum();
+      assertEquals(serial.responseTimeIncidents(urgencyLevel), sliced);
+    }
+  }
+}
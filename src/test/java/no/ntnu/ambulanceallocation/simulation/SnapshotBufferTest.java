@@ -0,0 +1,72 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class SnapshotBufferTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2017, 8, 7, 0, 0);
+
+  @Test
+  public void fullBufferShouldOverwriteOldestSnapshots() {
+    var snapshots = new SnapshotBuffer(4);
+    for (var i = 0; i < 10; i++) {
+      snapshots.publish(snapshot(i));
+    }
+    snapshots.close();
+
+    // only the last four snapshots survive, still in order
+    for (var i = 6; i < 10; i++) {
+      assertFalse(snapshots.isDrained());
+      assertEquals(snapshot(i), snapshots.poll());
+    }
+    assertNull(snapshots.poll());
+    assertTrue(snapshots.isDrained());
+  }
+
+  @Test
+  public void consumerShouldSeeSnapshotsInPublishedOrder() throws InterruptedException {
+    var snapshots = new SnapshotBuffer(16);
+    var count = 100_000;
+    var producer =
+        new Thread(
+            () -> {
+              for (var i = 0; i < count; i++) {
+                snapshots.publish(snapshot(i));
+              }
+              snapshots.close();
+            });
+    producer.start();
+
+    // the consumer may skip snapshots it was lapped on, but never goes back in time
+    var seen = new ArrayList<Integer>();
+    while (!snapshots.isDrained()) {
+      var snapshot = snapshots.poll();
+      if (snapshot != null) {
+        seen.add(index(snapshot));
+      }
+    }
+    producer.join();
+
+    for (var i = 1; i < seen.size(); i++) {
+      assertTrue(seen.get(i - 1) < seen.get(i));
+    }
+    assertEquals(count - 1, seen.get(seen.size() - 1));
+  }
+
+  private static FleetSnapshot snapshot(int index) {
+    return new FleetSnapshot(START.plusSeconds(index), List.of(), List.of());
+  }
+
+  private static int index(FleetSnapshot snapshot) {
+    return (int) Duration.between(START, snapshot.time()).getSeconds();
+  }
+}
@@ -0,0 +1,53 @@
+package no.ntnu.ambulanceallocation.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import no.ntnu.ambulanceallocation.Parameters;
+import no.ntnu.ambulanceallocation.optimization.Allocation;
+import no.ntnu.ambulanceallocation.optimization.initializer.PopulationProportionate;
+import org.junit.jupiter.api.Test;
+
+public class ZonedSimulationTest {
+
+  private static final List<Duration> WINDOWS =
+      List.of(Duration.ofMinutes(10), Duration.ofHours(6), Duration.ofDays(7));
+
+  @Test
+  public void singleZoneShouldMatchSerialSimulation() {
+    var config = Config.defaultConfig();
+    var allocation = allocation();
+    var expected = Simulation.withConfig(config).simulate(allocation);
+
+    for (var window : WINDOWS) {
+      var actual = ZonedSimulation.partitioned(config, 1).simulate(allocation, window);
+      assertEquals(expected.averageResponseTimes(), actual.averageResponseTimes());
+      assertEquals(expected.averageSurvivalRate(), actual.averageSurvivalRate());
+    }
+  }
+
+  @Test
+  public void zonedSimulationsShouldNotDependOnWindow() {
+    var config = Config.defaultConfig();
+    var allocation = allocation();
+
+    for (var zonedSimulation :
+        List.of(ZonedSimulation.partitioned(config, 4), ZonedSimulation.regions(config, 3))) {
+      var expected = zonedSimulation.simulate(allocation, Duration.ZERO);
+      for (var window : WINDOWS) {
+        var actual = zonedSimulation.simulate(allocation, window);
+        assertEquals(expected.averageResponseTimes(), actual.averageResponseTimes());
+        assertEquals(expected.averageSurvivalRate(), actual.averageSurvivalRate());
+      }
+    }
+  }
+
+  private static Allocation allocation() {
+    var initializer = new PopulationProportionate();
+    return new Allocation(
+        List.of(
+            initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_DAY),
+            initializer.initialize(Parameters.NUMBER_OF_AMBULANCES_NIGHT)));
+  }
+}
@@ -0,0 +1,83 @@
+package no.ntnu.ambulanceallocation.simulation.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TraceTest {
+
+  private static final LocalDateTime START = LocalDateTime.of(2017, 8, 7, 0, 0);
+
+  @TempDir Path directory;
+
+  @Test
+  public void tracesShouldReadBackAsWritten() {
+    // more records than fit in one buffer, so that both sides cross buffer boundaries
+    var records = records(10_000, 0);
+    var path = directory.resolve("run.trace");
+    write(path, records);
+
+    var replayed = new ArrayList<TraceRecord>();
+    TraceReader.replay(path, replayed::add);
+    assertEquals(records, replayed);
+    assertTrue(TraceReader.firstDifference(path, path).isEmpty());
+  }
+
+  @Test
+  public void firstDifferenceShouldFindFirstDivergingRecord() {
+    var expected = directory.resolve("expected.trace");
+    var actual = directory.resolve("actual.trace");
+    var records = records(1_000, 0);
+    write(expected, records);
+
+    var changed = new ArrayList<>(records);
+    changed.set(700, records(1, 5).get(0));
+    write(actual, changed);
+
+    var difference = TraceReader.firstDifference(expected, actual).orElseThrow();
+    assertEquals(700, difference.index());
+    assertEquals(records.get(700), difference.expected());
+    assertEquals(changed.get(700), difference.actual());
+  }
+
+  private static List<TraceRecord> records(int count, int seed) {
+    var records = new ArrayList<TraceRecord>();
+    var types = TraceType.values();
+    for (var i = 0; i < count; i++) {
+      var type = types[(i + seed) % types.length];
+      var candidates = type == TraceType.DISPATCH ? new int[] {i % 50 + 1, i % 7 + 1} : new int[0];
+      var scores = type == TraceType.DISPATCH ? new int[] {i, -i} : new int[0];
+      records.add(
+          new TraceRecord(
+              type,
+              START.plusSeconds(i * 37L + seed),
+              i % 3 == 0 ? -1 : i % 50 + 1,
+              i / 2,
+              22_620_006_649_000L + i,
+              candidates,
+              scores));
+    }
+    return records;
+  }
+
+  private static void write(Path path, List<TraceRecord> records) {
+    try (var writer = new TraceWriter(path)) {
+      for (var record : records) {
+        writer.write(
+            record.type(),
+            record.time(),
+            record.ambulanceId(),
+            record.incidentId(),
+            record.location(),
+            record.candidates(),
+            record.scores());
+      }
+    }
+  }
+}
@@ -1,9 +1,11 @@
 package no.ntnu.ambulanceallocation.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 
 public class UtilsTest {
@@ -28,4 +30,28 @@ public class UtilsTest {
     var median = Utils.median(exampleResponseTimesOdd);
     assertEquals(539.00, median);
   }
+
+  @Test
+  public void chooseNShouldPickEqualItems() {
+    var selection = Utils.randomChooseN(List.of(1, 1, 1, 2), 3);
+    assertEquals(3, selection.size());
+  }
+
+  @Test
+  public void streamShouldOnlyDependOnItsKey() {
+    Utils.useStream(3, 7, 11);
+    var expected = Utils.random().nextLong();
+
+    var onOtherThread =
+        CompletableFuture.supplyAsync(
+                () -> {
+                  Utils.useStream(3, 7, 11);
+                  return Utils.random().nextLong();
+                })
+            .join();
+    assertEquals(expected, onOtherThread);
+
+    Utils.useStream(3, 7, 12);
+    assertNotEquals(expected, Utils.random().nextLong());
+  }
 }